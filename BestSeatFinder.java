@@ -0,0 +1,100 @@
+package movieticketbookingsystem;
+
+import movieticketbookingsystem.db.SeatBitmap;
+
+import java.util.Arrays;
+
+// "Find N best seats": works on packed seat bitmasks one row at a time. Contiguous runs are found with
+// shift-and on the row's free mask, ranked by price tier (SeatLayout.getRowPrice) and then by
+// how close the run sits to the centre of the row. Falls back to the fewest, best contiguous blocks.
+public final class BestSeatFinder {
+
+    private BestSeatFinder() {}
+
+    public static int[] find(SeatBitmap seatMap, int partySize) {
+        long[] booked = seatMap.getBookedWords();
+        long[] held = seatMap.getHeldWords();
+        long[] taken = new long[booked.length];
+        for (int i = 0; i < taken.length; i++) taken[i] = booked[i] | held[i];
+        return find(taken, seatMap.getTotalSeats(), seatMap.getCols(), partySize);
+    }
+
+    // takenWords: bit i set = seat i unavailable. Returns seat indexes (sorted), or an empty array if not enough seats.
+    // Rows must fit in one word (cols <= 64), which every layout from SeatLayout.colsForCapacity does up to 1664 seats.
+    public static int[] find(long[] takenWords, int totalSeats, int cols, int partySize) {
+        if (partySize <= 0 || cols <= 0 || cols > 64) return new int[0];
+        int rows = (totalSeats + cols - 1) / cols;
+        long[] freeRows = new long[rows];
+        int freeCount = 0;
+        for (int row = 0; row < rows; row++) {
+            freeRows[row] = freeMaskForRow(takenWords, totalSeats, cols, row);
+            freeCount += Long.bitCount(freeRows[row]);
+        }
+        if (freeCount < partySize) return new int[0];
+
+        int[] result = new int[partySize];
+        int found = 0;
+        int remaining = partySize;
+        while (remaining > 0) {
+            // Largest block we can still place, best-scored among all rows
+            int placed = 0;
+            for (int length = Math.min(remaining, cols); length >= 1 && placed == 0; length--) {
+                long best = bestRun(freeRows, cols, length);
+                if (best >= 0) {
+                    int row = (int) (best >>> 32);
+                    int start = (int) best;
+                    freeRows[row] &= ~(runMask(length) << start);
+                    for (int i = 0; i < length; i++) result[found++] = row * cols + start + i;
+                    placed = length;
+                }
+            }
+            if (placed == 0) return new int[0]; // Should not happen given freeCount
+            remaining -= placed;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Returns (row << 32 | startCol) of the best run of 'length' free seats, or -1
+    private static long bestRun(long[] freeRows, int cols, int length) {
+        long best = -1;
+        int bestPrice = -1;
+        int bestOffset = Integer.MAX_VALUE;
+        for (int row = 0; row < freeRows.length; row++) {
+            // starts has bit c set iff seats c .. c+length-1 are all free
+            long starts = freeRows[row];
+            for (int k = 1; k < length && starts != 0; k++) starts &= freeRows[row] >>> k;
+            if (starts == 0) continue;
+            int price = SeatLayout.getRowPrice(row, freeRows.length);
+            if (price < bestPrice) continue;
+            while (starts != 0) {
+                int start = Long.numberOfTrailingZeros(starts);
+                starts &= starts - 1;
+                int offset = Math.abs(2 * start + length - cols); // Twice the distance from the row centre
+                if (price > bestPrice || offset < bestOffset) {
+                    bestPrice = price;
+                    bestOffset = offset;
+                    best = ((long) row << 32) | start;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Extracts the row's 'cols' bits (possibly spanning two words) and inverts them into a free mask
+    private static long freeMaskForRow(long[] takenWords, int totalSeats, int cols, int row) {
+        int first = row * cols;
+        int seatsInRow = Math.min(cols, totalSeats - first);
+        int word = first >>> 6;
+        int shift = first & 63;
+        long bits = takenWords[word] >>> shift;
+        if (shift != 0 && shift + seatsInRow > 64 && word + 1 < takenWords.length) {
+            bits |= takenWords[word + 1] << (64 - shift);
+        }
+        return ~bits & runMask(seatsInRow);
+    }
+
+    private static long runMask(int length) {
+        return length >= 64 ? -1L : (1L << length) - 1;
+    }
+}
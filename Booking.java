@@ -1,7 +1,6 @@
 package movieticketbookingsystem;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 
 public class Booking {
@@ -10,7 +9,7 @@ public class Booking {
     private int userId;
     private int showtimeId;
     private LocalDateTime bookingTimestamp;
-    private List<String> bookedSeats;
+    private int[] seatIds; // SeatId values, sorted
     private Map<String, Integer> selectedSnacksWithQuantities;
     private int seatCost;
     private int snackCost;
@@ -19,14 +18,14 @@ public class Booking {
 
     // Constructor used by DAO
     public Booking(String id, int bookingId, int userId, int showtimeId, LocalDateTime bookingTimestamp,
-                   List<String> bookedSeats, Map<String, Integer> snacks,
+                   int[] seatIds, Map<String, Integer> snacks,
                    int seatCost, int snackCost, int totalCost, String status) {
         this.id = id;
         this.bookingId = bookingId;
         this.userId = userId;
         this.showtimeId = showtimeId;
         this.bookingTimestamp = bookingTimestamp;
-        this.bookedSeats = bookedSeats;
+        this.seatIds = seatIds;
         this.selectedSnacksWithQuantities = snacks;
         this.seatCost = seatCost;
         this.snackCost = snackCost;
@@ -40,7 +39,8 @@ public class Booking {
     public int getUserId() { return userId; }
     public int getShowtimeId() { return showtimeId; }
     public LocalDateTime getBookingTimestamp() { return bookingTimestamp; }
-    public List<String> getBookedSeats() { return bookedSeats; }
+    public int[] getSeatIds() { return seatIds; }
+    public String getSeatLabels() { return SeatId.format(seatIds); } // "A1, A2" for display
     public Map<String, Integer> getSelectedSnacksWithQuantities() { return selectedSnacksWithQuantities; }
     public int getSeatCost() { return seatCost; }
     public int getSnackCost() { return snackCost; }
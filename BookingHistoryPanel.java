@@ -2,37 +2,47 @@ package movieticketbookingsystem;
 
 // Imports... (ensure db DAOs are imported)
 import movieticketbookingsystem.db.BookingDAO;
-import movieticketbookingsystem.db.MovieDAO;
+import movieticketbookingsystem.db.DaoRegistry;
 import movieticketbookingsystem.db.ShowtimeDAO;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.text.NumberFormat;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class BookingHistoryPanel extends JPanel {
 
     // Fields (mainApp, DAOs, UI components)
     private MovieTicketBookingSystem mainApp;
     private JTable bookingTable;
-    private DefaultTableModel tableModel;
+    private BookingHistoryTableModel tableModel;
     private JButton cancelButton;
     private JButton backButton;
+    private JComboBox<String> statusFilterBox;
+    private JComboBox<String> periodFilterBox;
+    private JComboBox<String> sortOrderBox;
+    private JLabel statusLabel;
     private int currentUserId = -1;
+    private BookingDAO.HistoryCursor nextPageCursor; // null when the last page is loaded
+    private boolean loadingNextPage;
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final int PREFETCH_ROWS = 20; // Fetch the next page when the view gets this close to the end
+
+    private static final String[] STATUS_FILTERS = {"All bookings", "Confirmed", "Cancelled"};
+    private static final String[] PERIOD_FILTERS = {"All time", "Last 30 days", "Last 12 months"};
+    private static final String[] SORT_ORDERS = {"Newest first", "Oldest first"};
 
     private BookingDAO bookingDAO;
-    private MovieDAO movieDAO;
     private ShowtimeDAO showtimeDAO;
+    private PanelLoader historyLoader; // Table pages
+    private PanelLoader cancelLoader; // Booking/showtime lookup before the cancellation dialog
 
     // Formatters/Constants remain the same
     private static final DateTimeFormatter TABLE_DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("EEE, MMM dd yyyy 'at' hh:mm a");
@@ -43,56 +53,97 @@ public class BookingHistoryPanel extends JPanel {
     public BookingHistoryPanel(MovieTicketBookingSystem mainApp) {
         this.mainApp = mainApp;
         // Instantiate DAOs
-        this.bookingDAO = new BookingDAO();
-        this.movieDAO = new MovieDAO();
-        this.showtimeDAO = new ShowtimeDAO();
+        this.bookingDAO = DaoRegistry.getInstance().getBookingDAO();
+        this.showtimeDAO = DaoRegistry.getInstance().getShowtimeDAO();
         setupUI();
+        this.historyLoader = new PanelLoader("booking history", this, this::showHistoryState);
+        this.cancelLoader = new PanelLoader("booking for cancellation", this, state -> updateCancelButtonState());
     }
 
     private void setupUI() {
-        // --- UI Layout Code (Identical to previous version) ---
+        // --- UI Layout Code ---
          setLayout(new BorderLayout(10, 10)); setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-         JLabel titleLabel = new JLabel("My Bookings", SwingConstants.CENTER); titleLabel.setFont(new Font("Arial", Font.BOLD, 20)); add(titleLabel, BorderLayout.NORTH);
-         String[] columnNames = {"Booking ID", "Movie", "Showtime", "Seats", "Snacks", "Total Cost", "Status"}; tableModel = new DefaultTableModel(columnNames, 0) { @Override public boolean isCellEditable(int row, int column) { return false; } }; bookingTable = new JTable(tableModel); bookingTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION); bookingTable.setFillsViewportHeight(true);
-         TableColumnModel cm = bookingTable.getColumnModel(); cm.getColumn(0).setMinWidth(0); cm.getColumn(0).setMaxWidth(0); cm.getColumn(0).setWidth(0); cm.getColumn(0).setPreferredWidth(0); // Hide ID column
+         JPanel headerPanel = new JPanel(new BorderLayout(5, 5)); JLabel titleLabel = new JLabel("My Bookings", SwingConstants.CENTER); titleLabel.setFont(new Font("Arial", Font.BOLD, 20)); headerPanel.add(titleLabel, BorderLayout.NORTH);
+         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0)); statusFilterBox = new JComboBox<>(STATUS_FILTERS); periodFilterBox = new JComboBox<>(PERIOD_FILTERS); sortOrderBox = new JComboBox<>(SORT_ORDERS); statusFilterBox.addActionListener(e -> filtersChanged()); periodFilterBox.addActionListener(e -> filtersChanged()); sortOrderBox.addActionListener(e -> filtersChanged()); filterPanel.add(new JLabel("Show:")); filterPanel.add(statusFilterBox); filterPanel.add(new JLabel("Booked:")); filterPanel.add(periodFilterBox); filterPanel.add(new JLabel("Sort:")); filterPanel.add(sortOrderBox); headerPanel.add(filterPanel, BorderLayout.SOUTH); add(headerPanel, BorderLayout.NORTH);
+         tableModel = new BookingHistoryTableModel(); bookingTable = new JTable(tableModel); bookingTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION); bookingTable.setFillsViewportHeight(true);
+         TableColumnModel cm = bookingTable.getColumnModel(); cm.getColumn(BookingHistoryTableModel.ID_COLUMN).setMinWidth(0); cm.getColumn(BookingHistoryTableModel.ID_COLUMN).setMaxWidth(0); cm.getColumn(BookingHistoryTableModel.ID_COLUMN).setWidth(0); cm.getColumn(BookingHistoryTableModel.ID_COLUMN).setPreferredWidth(0); // Hide ID column
          bookingTable.getSelectionModel().addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) { updateCancelButtonState(); } });
-         JScrollPane scrollPane = new JScrollPane(bookingTable); add(scrollPane, BorderLayout.CENTER);
-         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10)); cancelButton = new JButton("Cancel Selected Booking"); cancelButton.setFont(new Font("Arial", Font.BOLD, 14)); cancelButton.setEnabled(false); cancelButton.addActionListener(this::handleCancelBooking); backButton = new JButton("Back"); backButton.setFont(new Font("Arial", Font.PLAIN, 14)); backButton.addActionListener(e -> mainApp.showPanel(MovieTicketBookingSystem.MOVIE_SELECTION_PANEL)); buttonPanel.add(cancelButton); buttonPanel.add(backButton); add(buttonPanel, BorderLayout.SOUTH);
+         JScrollPane scrollPane = new JScrollPane(bookingTable); scrollPane.getViewport().addChangeListener(e -> loadMoreIfNeeded()); add(scrollPane, BorderLayout.CENTER);
+         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10)); cancelButton = new JButton("Cancel Selected Booking"); cancelButton.setFont(new Font("Arial", Font.BOLD, 14)); cancelButton.setEnabled(false); cancelButton.addActionListener(this::handleCancelBooking); backButton = new JButton("Back"); backButton.setFont(new Font("Arial", Font.PLAIN, 14)); backButton.addActionListener(e -> mainApp.showPanel(MovieTicketBookingSystem.MOVIE_SELECTION_PANEL)); statusLabel = new JLabel(" "); buttonPanel.add(statusLabel); buttonPanel.add(cancelButton); buttonPanel.add(backButton); add(buttonPanel, BorderLayout.SOUTH);
         // --- End UI Layout ---
     }
 
-    // Use DAO to load bookings
+    // Use DAO to load bookings (in the background). Reloading the same user's history keeps the rows on screen,
+    // marked as refreshing, until the new first page arrives; later pages load as the user scrolls.
     public void loadBookings(int userId) {
+        if (userId != currentUserId) {
+            historyLoader.reset();
+            tableModel.clear();
+        }
         this.currentUserId = userId;
-        tableModel.setRowCount(0);
+        loadFirstPage();
+    }
+
+    private void filtersChanged() {
+        if (historyLoader == null) return; // Still building the UI
+        historyLoader.reset(); // Rows of the old filter are not a stale version of the new one
+        tableModel.clear();
+        loadFirstPage();
+    }
+
+    private void loadFirstPage() {
+        nextPageCursor = null;
+        loadingNextPage = false;
         cancelButton.setEnabled(false);
-        if (userId == -1) return;
-
-        // Use BookingDAO to get bookings
-        List<Booking> userBookings = bookingDAO.getBookingsByUserId(userId);
-
-        for (Booking booking : userBookings) {
-            // Use other DAOs to get related info using stored integer IDs
-            Optional<Showtime> showtimeOpt = showtimeDAO.getShowtimeByIntId(booking.getShowtimeId());
-            Optional<Movie> movieOpt = showtimeOpt.flatMap(st -> movieDAO.getMovieByIntId(st.getMovieId()));
-
-            String movieTitle = movieOpt.map(Movie::getTitle).orElse("N/A");
-            String showtimeStr = showtimeOpt.map(st -> st.getShowDateTime().format(TABLE_DATE_TIME_FORMAT)).orElse("N/A");
-            String seatsStr = String.join(", ", booking.getBookedSeats());
-            String snacksStr = formatSnacks(booking.getSelectedSnacksWithQuantities());
-            String costStr = currencyFormatter.format(booking.getTotalCost());
-            String status = booking.getStatus();
-
-            tableModel.addRow(new Object[]{
-                    booking.getId(), // Store MongoDB ObjectId String in the hidden column now
-                    movieTitle, showtimeStr, seatsStr, snacksStr, costStr, status
-            });
+        if (currentUserId == -1) return;
+        int userId = currentUserId;
+        BookingDAO.HistoryFilter filter = currentFilter();
+        historyLoader.load(() -> bookingDAO.getBookingHistoryPage(userId, filter, null, HISTORY_PAGE_SIZE), page -> {
+            nextPageCursor = page.getNextCursor();
+            tableModel.replaceRows(page.getRows());
+            updateCancelButtonState();
+        });
+    }
+
+    private void loadMoreIfNeeded() {
+        if (currentUserId == -1 || nextPageCursor == null || historyLoader == null || historyLoader.isLoading()) return;
+        Rectangle visible = bookingTable.getVisibleRect();
+        int lastVisibleRow = bookingTable.rowAtPoint(new Point(0, visible.y + visible.height - 1)); // -1 below the last row
+        if (lastVisibleRow >= 0 && lastVisibleRow < tableModel.getRowCount() - PREFETCH_ROWS) return;
+        int userId = currentUserId;
+        BookingDAO.HistoryFilter filter = currentFilter();
+        BookingDAO.HistoryCursor after = nextPageCursor;
+        loadingNextPage = true;
+        historyLoader.load(() -> bookingDAO.getBookingHistoryPage(userId, filter, after, HISTORY_PAGE_SIZE), page -> {
+            loadingNextPage = false;
+            nextPageCursor = page.getNextCursor();
+            tableModel.appendRows(page.getRows()); // May trigger the next page if the view is still near the end
+        });
+    }
+
+    // Sorting and filtering run on the server (see BookingDAO.getBookingHistoryPage)
+    private BookingDAO.HistoryFilter currentFilter() {
+        String status = null;
+        if (statusFilterBox.getSelectedIndex() == 1) status = "confirmed";
+        else if (statusFilterBox.getSelectedIndex() == 2) status = "cancelled";
+        LocalDateTime bookedSince = null;
+        if (periodFilterBox.getSelectedIndex() == 1) bookedSince = LocalDate.now().minusDays(30).atStartOfDay();
+        else if (periodFilterBox.getSelectedIndex() == 2) bookedSince = LocalDate.now().minusMonths(12).atStartOfDay();
+        return new BookingDAO.HistoryFilter(status, bookedSince, sortOrderBox.getSelectedIndex() == 0);
+    }
+
+    private void showHistoryState(PanelLoader.State state) {
+        switch (state) {
+            case LOADING: statusLabel.setText("Loading bookings..."); break;
+            case REFRESHING: statusLabel.setText(loadingNextPage ? "Loading more..." : "Refreshing..."); break;
+            case FAILED: statusLabel.setText(tableModel.getRowCount() > 0 ? "Could not refresh (showing earlier data)" : "Could not load bookings"); break;
+            default: statusLabel.setText(" ");
         }
+        if (!historyLoader.isLoading()) loadingNextPage = false;
     }
 
-    // formatSnacks and updateCancelButtonState remain the same
-    private String formatSnacks(Map<String, Integer> snacks) { /* Same */ if (snacks == null || snacks.isEmpty()) return "None"; return snacks.entrySet().stream().map(entry -> entry.getKey() + " x" + entry.getValue()).collect(Collectors.joining(", ")); }
-    private void updateCancelButtonState() { /* Same */ int selectedRow = bookingTable.getSelectedRow(); if (selectedRow >= 0) { String status = (String) tableModel.getValueAt(selectedRow, 6); cancelButton.setEnabled("confirmed".equalsIgnoreCase(status)); } else { cancelButton.setEnabled(false); } }
+    // updateCancelButtonState remains the same
+    private void updateCancelButtonState() { /* Same */ int selectedRow = bookingTable.getSelectedRow(); if (cancelLoader != null && cancelLoader.isLoading()) { cancelButton.setEnabled(false); } else if (selectedRow >= 0) { String status = (String) tableModel.getValueAt(selectedRow, BookingHistoryTableModel.STATUS_COLUMN); cancelButton.setEnabled("confirmed".equalsIgnoreCase(status)); } else { cancelButton.setEnabled(false); } }
 
     // Use DAO to cancel booking
     private void handleCancelBooking(ActionEvent e) {
@@ -100,22 +151,38 @@ public class BookingHistoryPanel extends JPanel {
         if (selectedRow < 0) return;
 
         // Get MongoDB ObjectId String from hidden column 0
-        String bookingMongoId = (String) tableModel.getValueAt(selectedRow, 0);
+        String bookingMongoId = (String) tableModel.getValueAt(selectedRow, BookingHistoryTableModel.ID_COLUMN);
         if (bookingMongoId == null) {
              JOptionPane.showMessageDialog(this, "Cannot identify selected booking.", "Error", JOptionPane.ERROR_MESSAGE);
              return;
         }
 
-        // Fetch full booking details using ObjectId to get seats and showtimeId
-        Optional<Booking> bookingOpt = bookingDAO.getBookingByObjectId(bookingMongoId);
+        // Fetch full booking details using ObjectId to get seats and showtimeId (in the background)
+        cancelLoader.load(() -> {
+            Optional<Booking> bookingOpt = bookingDAO.getBookingByObjectId(bookingMongoId);
+            Optional<Showtime> showtimeOpt = bookingOpt.flatMap(b -> showtimeDAO.getShowtimeByIntId(b.getShowtimeId()));
+            return new CancelTarget(bookingOpt, showtimeOpt);
+        }, target -> confirmCancellation(bookingMongoId, target));
+    }
+
+    private static final class CancelTarget {
+        final Optional<Booking> booking;
+        final Optional<Showtime> showtime;
+
+        CancelTarget(Optional<Booking> booking, Optional<Showtime> showtime) {
+            this.booking = booking;
+            this.showtime = showtime;
+        }
+    }
 
-        if (!bookingOpt.isPresent()) {
+    private void confirmCancellation(String bookingMongoId, CancelTarget target) {
+        if (!target.booking.isPresent()) {
             JOptionPane.showMessageDialog(this, "Booking details not found.", "Error", JOptionPane.ERROR_MESSAGE);
             loadBookings(this.currentUserId); return;
         }
-        Booking booking = bookingOpt.get();
+        Booking booking = target.booking.get();
 
-        Optional<Showtime> showtimeOpt = showtimeDAO.getShowtimeByIntId(booking.getShowtimeId());
+        Optional<Showtime> showtimeOpt = target.showtime;
 
         if (!showtimeOpt.isPresent() || !"confirmed".equalsIgnoreCase(booking.getStatus())) {
             JOptionPane.showMessageDialog(this, "Cannot cancel this booking (invalid showtime or status).", "Cancellation Error", JOptionPane.WARNING_MESSAGE);
@@ -137,19 +204,20 @@ public class BookingHistoryPanel extends JPanel {
         int choice = JOptionPane.showConfirmDialog(this, message, "Confirm Cancellation", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
         if (choice == JOptionPane.YES_OPTION) {
-            // Perform cancellation using DAO Transaction
-            boolean cancelled = bookingDAO.cancelBookingTransaction(
+            // Perform cancellation using DAO Transaction (off the EDT)
+            cancelButton.setEnabled(false);
+            bookingDAO.cancelBookingAsync(
                                     bookingMongoId, // Pass MongoDB ID
-                                    booking.getBookedSeats(),
-                                    showtime.getShowtimeId()
-                                );
-
-            if (cancelled) {
-                JOptionPane.showMessageDialog(this, "Booking Cancelled. Refund amount: " + currencyFormatter.format(refundAmount), "Cancellation Successful", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                 JOptionPane.showMessageDialog(this, "Cancellation failed. Booking might have already been cancelled or an error occurred.", "Cancellation Error", JOptionPane.ERROR_MESSAGE);
-            }
-             loadBookings(this.currentUserId); // Refresh the table regardless
+                                    showtime.getShowtimeId(),
+                                    booking.getSeatIds()
+                                ).whenComplete((cancelled, error) -> SwingUtilities.invokeLater(() -> {
+                if (error == null && cancelled) {
+                    JOptionPane.showMessageDialog(this, "Booking Cancelled. Refund amount: " + currencyFormatter.format(refundAmount), "Cancellation Successful", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                     JOptionPane.showMessageDialog(this, "Cancellation failed. Booking might have already been cancelled or an error occurred.", "Cancellation Error", JOptionPane.ERROR_MESSAGE);
+                }
+                 loadBookings(this.currentUserId); // Refresh the table regardless
+            }));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package movieticketbookingsystem;
+
+import movieticketbookingsystem.db.BookingDAO;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Booking history rows as the DAO returns them (booking + joined title/show time); cell text is formatted only
+// when the table paints a cell, so loading a page costs no formatting for rows that are never scrolled to.
+// Rows arrive a page at a time via appendRows. EDT only.
+class BookingHistoryTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int ID_COLUMN = 0; // Hidden: MongoDB ObjectId string
+    static final int STATUS_COLUMN = 6;
+
+    private static final String[] COLUMN_NAMES = {"Booking ID", "Movie", "Showtime", "Seats", "Snacks", "Total Cost", "Status"};
+    private static final DateTimeFormatter TABLE_DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("EEE, MMM dd yyyy 'at' hh:mm a");
+    private static final NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    static { currencyFormatter.setMaximumFractionDigits(0); }
+
+    private final transient List<BookingDAO.HistoryRow> rows = new ArrayList<>();
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        BookingDAO.HistoryRow row = rows.get(rowIndex);
+        Booking booking = row.getBooking();
+        switch (columnIndex) {
+            case ID_COLUMN: return booking.getId();
+            case 1: return (row.getMovieTitle() != null) ? row.getMovieTitle() : "N/A";
+            case 2: return (row.getShowDateTime() != null) ? row.getShowDateTime().format(TABLE_DATE_TIME_FORMAT) : "N/A";
+            case 3: return booking.getSeatLabels();
+            case 4: return formatSnacks(booking.getSelectedSnacksWithQuantities());
+            case 5: return currencyFormatter.format(booking.getTotalCost());
+            case STATUS_COLUMN: return booking.getStatus();
+            default: return null;
+        }
+    }
+
+    public Booking getBooking(int rowIndex) {
+        return rows.get(rowIndex).getBooking();
+    }
+
+    public void appendRows(List<BookingDAO.HistoryRow> page) {
+        if (page.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(page);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    // Swaps in a fresh first page (one table event, so a refresh doesn't flash an empty table)
+    public void replaceRows(List<BookingDAO.HistoryRow> page) {
+        rows.clear();
+        rows.addAll(page);
+        fireTableDataChanged();
+    }
+
+    public void clear() {
+        if (rows.isEmpty()) return;
+        int last = rows.size() - 1;
+        rows.clear();
+        fireTableRowsDeleted(0, last);
+    }
+
+    private static String formatSnacks(Map<String, Integer> snacks) {
+        if (snacks == null || snacks.isEmpty()) return "None";
+        return snacks.entrySet().stream().map(entry -> entry.getKey() + " x" + entry.getValue()).collect(Collectors.joining(", "));
+    }
+}
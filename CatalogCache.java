@@ -0,0 +1,174 @@
+package movieticketbookingsystem.db;
+
+import movieticketbookingsystem.Movie;
+import movieticketbookingsystem.Showtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.ObjectName;
+
+// Shared read-through cache for movies and showtimes by integer id. The catalog changes rarely, so lookups are
+// served from memory and only reach MongoDB on a miss or after the entry's TTL (-Dcatalog.cacheTtlSeconds,
+// default 600). Each region holds at most -Dcatalog.cacheMaxEntries entries (default 1000), evicting the least
+// recently used. Writers call the invalidate methods; other kiosks' changes show up within one TTL.
+// Hit/miss counters are exported over JMX as movieticketbookingsystem:type=CatalogCache.
+public class CatalogCache {
+
+    private static final long TTL_NANOS = Math.max(0, Long.getLong("catalog.cacheTtlSeconds", 600)) * 1_000_000_000L;
+    private static final int MAX_ENTRIES = Math.max(1, Integer.getInteger("catalog.cacheMaxEntries", 1000));
+
+    private static volatile CatalogCache instance;
+
+    private final Region<Movie> movies = new Region<>();
+    private final Region<Showtime> showtimes = new Region<>();
+    private final Metrics metrics = new Metrics();
+
+    private CatalogCache() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("movieticketbookingsystem:type=CatalogCache"));
+        } catch (Exception e) {
+            System.err.println("Could not register catalog cache metrics: " + e.getMessage());
+        }
+    }
+
+    public static CatalogCache getInstance() {
+        CatalogCache local = instance;
+        if (local == null) {
+            synchronized (CatalogCache.class) {
+                local = instance;
+                if (local == null) {
+                    local = new CatalogCache();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public CatalogCacheMXBean getMetrics() {
+        return metrics;
+    }
+
+    // Cached movie, or the loader's result (cached unless empty)
+    public Optional<Movie> getMovie(int movieId, Supplier<Optional<Movie>> loader) {
+        return movies.get(movieId, loader);
+    }
+
+    public Optional<Showtime> getShowtime(int showtimeId, Supplier<Optional<Showtime>> loader) {
+        return showtimes.get(showtimeId, loader);
+    }
+
+    // Fresh cached movie without loading; bulk lookups use it to fetch only the rest
+    public Optional<Movie> peekMovie(int movieId) {
+        Optional<Movie> cached = Optional.ofNullable(movies.peek(movieId));
+        (cached.isPresent() ? metrics.hits : metrics.misses).increment();
+        return cached;
+    }
+
+    public void putMovie(Movie movie) {
+        movies.put(movie.getMovieId(), movie);
+    }
+
+    public void invalidateMovie(int movieId) {
+        movies.remove(movieId);
+        metrics.invalidations.increment();
+    }
+
+    public void invalidateShowtime(int showtimeId) {
+        showtimes.remove(showtimeId);
+        metrics.invalidations.increment();
+    }
+
+    public void invalidateAll() {
+        movies.clear();
+        showtimes.clear();
+        metrics.invalidations.increment();
+    }
+
+    // One LRU map per entity type; the lock is held only for map access, never across a database call
+    private final class Region<V> {
+        private final Map<Integer, Entry<V>> entries = new LinkedHashMap<Integer, Entry<V>>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                if (size() <= MAX_ENTRIES) return false;
+                metrics.evictions.increment();
+                return true;
+            }
+        };
+
+        Optional<V> get(int id, Supplier<Optional<V>> loader) {
+            V cached = peek(id);
+            if (cached != null) {
+                metrics.hits.increment();
+                return Optional.of(cached);
+            }
+            metrics.misses.increment();
+            Optional<V> loaded = loader.get();
+            loaded.ifPresent(value -> put(id, value));
+            return loaded;
+        }
+
+        synchronized V peek(int id) {
+            Entry<V> entry = entries.get(id);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.loadedAtNanos > TTL_NANOS) {
+                entries.remove(id);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(int id, V value) {
+            entries.put(id, new Entry<>(value));
+        }
+
+        synchronized void remove(int id) {
+            entries.remove(id);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAtNanos = System.nanoTime();
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    public interface CatalogCacheMXBean {
+        long getHits();
+        long getMisses();
+        long getEvictions();
+        long getInvalidations();
+        int getMovieEntries();
+        int getShowtimeEntries();
+    }
+
+    private final class Metrics implements CatalogCacheMXBean {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder(); // Includes expired entries
+        final LongAdder evictions = new LongAdder(); // Dropped for size, not TTL
+        final LongAdder invalidations = new LongAdder();
+
+        @Override public long getHits() { return hits.sum(); }
+        @Override public long getMisses() { return misses.sum(); }
+        @Override public long getEvictions() { return evictions.sum(); }
+        @Override public long getInvalidations() { return invalidations.sum(); }
+        @Override public int getMovieEntries() { return movies.size(); }
+        @Override public int getShowtimeEntries() { return showtimes.size(); }
+    }
+}
@@ -72,7 +72,7 @@ public class ConfirmationPanel extends JPanel {
     // Method to display the confirmation details
     // Accepts Movie for title/theatre and BookingDetails for cost breakdown
     public void showConfirmation(Movie movie, MovieTicketBookingSystem.BookingDetails details) {
-        if (movie == null || details == null || details.bookedSeats == null || details.bookedSeats.isEmpty()) {
+        if (movie == null || details == null || details.seatIds == null || details.seatIds.length == 0) {
             confirmationDetailsArea.setText("Error displaying confirmation details.");
             downloadBillButton.setEnabled(false); // Disable download if no details
             return;
@@ -100,7 +100,7 @@ public class ConfirmationPanel extends JPanel {
         confirmationText.append(String.format("%-12s %s\n", "Showtime:", showtimeStr)).append("\n");
 
         confirmationText.append(String.format("%-12s %s (%d)\n", "Seats:",
-                String.join(", ", details.bookedSeats), details.bookedSeats.size()));
+                SeatId.format(details.seatIds), details.seatIds.length));
         confirmationText.append(String.format("%-12s %s\n", "Seat Cost:",
                 currencyFormatter.format(details.seatCost))).append("\n");
 
@@ -0,0 +1,62 @@
+package movieticketbookingsystem.db;
+
+// One shared instance of each DAO. DAO constructors only look up their collections (no I/O), so the registry is
+// cheap to create; indexes and sample data are set up once per process by SchemaBootstrap.
+// -Dstorage.backend=memory serves every DAO from one in-memory DataStore instead of MongoDB (load tests,
+// single-machine kiosk mode); the default is 'mongo'.
+public class DaoRegistry {
+
+    private static volatile DaoRegistry instance;
+
+    private final SeatDAO seatDAO;
+    private final MovieDAO movieDAO;
+    private final UserDAO userDAO;
+    private final ShowtimeDAO showtimeDAO;
+    private final BookingDAO bookingDAO;
+
+    private DaoRegistry() {
+        if (isInMemory()) {
+            DataStore store = new DataStore();
+            this.seatDAO = store;
+            this.movieDAO = store;
+            this.userDAO = store;
+            this.showtimeDAO = store;
+            this.bookingDAO = store;
+            System.out.println("Storage backend: in-memory DataStore (nothing is persisted)");
+        } else {
+            MongoSeatDAO mongoSeatDAO = new MongoSeatDAO();
+            MongoShowtimeDAO mongoShowtimeDAO = new MongoShowtimeDAO(mongoSeatDAO);
+            this.seatDAO = mongoSeatDAO;
+            this.movieDAO = new MongoMovieDAO();
+            this.userDAO = new MongoUserDAO();
+            this.showtimeDAO = mongoShowtimeDAO;
+            this.bookingDAO = new MongoBookingDAO(mongoSeatDAO, mongoShowtimeDAO);
+        }
+    }
+
+    // Fixed for the life of the process; services with their own MongoDB access (change streams, write-behind)
+    // check it so the in-memory backend never opens a connection
+    public static boolean isInMemory() {
+        return "memory".equalsIgnoreCase(System.getProperty("storage.backend", "mongo"));
+    }
+
+    public static DaoRegistry getInstance() {
+        DaoRegistry local = instance;
+        if (local == null) {
+            synchronized (DaoRegistry.class) {
+                local = instance;
+                if (local == null) {
+                    local = new DaoRegistry();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public SeatDAO getSeatDAO() { return seatDAO; }
+    public MovieDAO getMovieDAO() { return movieDAO; }
+    public UserDAO getUserDAO() { return userDAO; }
+    public ShowtimeDAO getShowtimeDAO() { return showtimeDAO; }
+    public BookingDAO getBookingDAO() { return bookingDAO; }
+}
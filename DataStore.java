@@ -1,116 +1,543 @@
-package movieticketbookingsystem;
+package movieticketbookingsystem.db;
+
+import movieticketbookingsystem.Booking;
+import movieticketbookingsystem.Movie;
+import movieticketbookingsystem.SeatId;
+import movieticketbookingsystem.SeatLayout;
+import movieticketbookingsystem.Showtime;
+import movieticketbookingsystem.UserData;
+import org.bson.types.ObjectId;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory storage backend (-Dstorage.backend=memory, see DaoRegistry): every DAO served from concurrent maps in
+// this process, for load tests and single-machine kiosks. Hash indexes answer point lookups (ids, ObjectId
+// strings, usernames, request keys); sorted indexes answer ranges: showtimes by date-time and per movie, and each
+// user's bookings by (timestamp, ObjectId) for keyset-paged history. Seat bitsets and availability counters are
+// kept per showtime and change under that showtime's lock, so bookings for different showtimes never contend.
+// Starts with the same sample data as the MongoDB DAOs. Nothing is persisted.
+public class DataStore implements UserDAO, MovieDAO, ShowtimeDAO, SeatDAO, BookingDAO {
+
+    private static final ObjectId MIN_OBJECT_ID = new ObjectId(new byte[12]);
+
+    // Users
+    private final Map<String, UserRecord> usersByName = new ConcurrentHashMap<>();
+
+    // Movies
+    private final Map<Integer, Movie> moviesById = new ConcurrentHashMap<>();
+    private final Map<String, Movie> moviesByObjectId = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Movie> moviesByTitle = new ConcurrentSkipListMap<>(); // "title\0id"
+
+    // Showtimes; writers lock showtimesByDateTime so the indexes change together, readers don't lock
+    private final Map<Integer, Showtime> showtimesById = new ConcurrentHashMap<>();
+    private final Map<String, Showtime> showtimesByObjectId = new ConcurrentHashMap<>();
+    private final NavigableMap<LocalDateTime, NavigableMap<Integer, Showtime>> showtimesByDateTime = new ConcurrentSkipListMap<>();
+    private final Map<Integer, NavigableMap<LocalDateTime, Showtime>> showtimesByMovie = new ConcurrentHashMap<>();
+
+    // Seats
+    private final Map<Integer, ShowtimeSeats> seatsByShowtime = new ConcurrentHashMap<>();
+
+    // Bookings; the secondary indexes hold ObjectId strings so a cancellation only replaces the primary entry
+    private final Map<String, Booking> bookingsByObjectId = new ConcurrentHashMap<>();
+    private final Map<Integer, String> bookingObjectIdByIntId = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableMap<BookingKey, String>> bookingsByUser = new ConcurrentHashMap<>();
+    private final Map<String, String> bookingObjectIdByRequestKey = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextUserId = new AtomicInteger(1);
+    private final AtomicInteger nextMovieId = new AtomicInteger(1);
+    private final AtomicInteger nextShowtimeId = new AtomicInteger(1);
+    private final AtomicInteger nextBookingId = new AtomicInteger(1);
+
+    public DataStore() {
+        addUser("admin", "password");
+        addUser("user", "user");
+
+        int matrix = addMovie("The Matrix", "A computer hacker learns...", "Cineplex A");
+        int inception = addMovie("Inception", "A thief who enters dreams...", "Cineplex B");
+        int interstellar = addMovie("Interstellar", "Explorers travel through space...", "IMAX Theatre");
+
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        LocalDateTime tomorrow = today.plusDays(1);
+        createShowtime(matrix, today.with(LocalTime.of(13, 0)), 50);
+        createShowtime(matrix, today.with(LocalTime.of(19, 0)), 50);
+        createShowtime(inception, today.with(LocalTime.of(10, 0)), 60);
+        createShowtime(inception, tomorrow.with(LocalTime.of(13, 0)), 60);
+        createShowtime(interstellar, tomorrow.with(LocalTime.of(19, 0)), 64);
+    }
+
+    // Sample data is loaded by the constructor and every index is maintained on write: nothing to set up
+    @Override
+    public void ensureSchema() {
+    }
+
+    // --- Users ---
+
+    // Returns the new user's id, or -1 if the username is taken
+    public int addUser(String username, String plainPassword) {
+        int userId = nextUserId.getAndIncrement();
+        UserData user = new UserData(new ObjectId().toHexString(), userId, username);
+        return (usersByName.putIfAbsent(username, new UserRecord(user, plainPassword)) == null) ? userId : -1;
+    }
+
+    // Same plain comparison as MongoUserDAO (see its warning)
+    @Override
+    public Optional<UserData> findUserAndVerifyPassword(String username, String plainPassword) {
+        UserRecord record = (username != null) ? usersByName.get(username) : null;
+        if (record == null || !record.password.equals(plainPassword)) return Optional.empty();
+        return Optional.of(record.user);
+    }
+
+    // --- Movies ---
+
+    // Returns the new movie's id
+    public int addMovie(String title, String description, String theatre) {
+        int movieId = nextMovieId.getAndIncrement();
+        Movie movie = new Movie(new ObjectId().toHexString(), movieId, title, description, theatre);
+        moviesById.put(movieId, movie);
+        moviesByObjectId.put(movie.getId(), movie);
+        moviesByTitle.put(title + '\0' + movieId, movie);
+        return movieId;
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        return new ArrayList<>(moviesByTitle.values());
+    }
+
+    @Override
+    public Optional<Movie> getMovieByIntId(int movieId) {
+        return Optional.ofNullable(moviesById.get(movieId));
+    }
+
+    @Override
+    public Map<Integer, Movie> getMoviesByIntIds(Collection<Integer> movieIds) {
+        Map<Integer, Movie> movies = new HashMap<>();
+        for (Integer movieId : movieIds) {
+            Movie movie = moviesById.get(movieId);
+            if (movie != null) movies.put(movieId, movie);
+        }
+        return movies;
+    }
+
+    @Override
+    public Optional<Movie> getMovieByObjectId(String idString) {
+        return Optional.ofNullable((idString != null) ? moviesByObjectId.get(idString) : null);
+    }
+
+    // --- Showtimes ---
 
-// Simple In-Memory Data Store Simulation
-public class DataStore {
+    @Override
+    public List<Showtime> getShowtimesBetween(LocalDateTime from, LocalDateTime to) {
+        List<Showtime> showtimes = new ArrayList<>();
+        if (!from.isBefore(to)) return showtimes;
+        for (NavigableMap<Integer, Showtime> slot : showtimesByDateTime.subMap(from, true, to, false).values()) {
+            showtimes.addAll(slot.values());
+        }
+        return showtimes;
+    }
+
+    @Override
+    public Optional<Showtime> findShowtime(int movieId, LocalDateTime dateTime) {
+        NavigableMap<LocalDateTime, Showtime> movieShowtimes = showtimesByMovie.get(movieId);
+        return Optional.ofNullable((movieShowtimes != null) ? movieShowtimes.get(dateTime) : null);
+    }
+
+    @Override
+    public Optional<Showtime> getShowtimeByIntId(int showtimeId) {
+        return Optional.ofNullable(showtimesById.get(showtimeId));
+    }
+
+    @Override
+    public Optional<Showtime> getShowtimeByObjectId(String idString) {
+        return Optional.ofNullable((idString != null) ? showtimesByObjectId.get(idString) : null);
+    }
+
+    @Override
+    public int createShowtime(int movieId, LocalDateTime showDateTime, int totalSeats) {
+        if (showDateTime == null) return -1;
+        int showtimeId = nextShowtimeId.getAndIncrement();
+        Showtime showtime = new Showtime(new ObjectId().toHexString(), showtimeId, movieId, showDateTime, totalSeats);
+        initializeSeatsForShowtime(showtimeId, totalSeats); // Before it becomes visible, so it never lacks a seat map
+        synchronized (showtimesByDateTime) {
+            showtimesById.put(showtimeId, showtime);
+            showtimesByObjectId.put(showtime.getId(), showtime);
+            showtimesByDateTime.computeIfAbsent(showDateTime, t -> new ConcurrentSkipListMap<>()).put(showtimeId, showtime);
+            showtimesByMovie.computeIfAbsent(movieId, id -> new ConcurrentSkipListMap<>()).put(showDateTime, showtime);
+        }
+        ShowtimeSchedule.showtimeSaved(showtime);
+        return showtimeId;
+    }
+
+    // Declared by both ShowtimeDAO and SeatDAO; a new seat map also resets the counters
+    @Override
+    public boolean initializeSeatsForShowtime(int showtimeId, int totalSeats) {
+        return initializeSeatsForShowtime(showtimeId, totalSeats, SeatLayout.colsForCapacity(totalSeats));
+    }
 
-    private static List<UserData> users = new ArrayList<>();
-    private static List<Movie> movies = new ArrayList<>();
-    private static List<Showtime> showtimes = new ArrayList<>();
-    private static List<Booking> bookings = new ArrayList<>();
+    // Counters are read under each showtime's lock; no seat map is scanned
+    @Override
+    public List<ShowtimeAvailability> getAvailability(LocalDateTime from, LocalDateTime to) {
+        List<ShowtimeAvailability> availability = new ArrayList<>();
+        for (Showtime showtime : getShowtimesBetween(from, to)) {
+            ShowtimeSeats seats = seatsByShowtime.get(showtime.getShowtimeId());
+            int seatsAvailable = -1;
+            int minPrice = 0;
+            int maxPrice = 0;
+            if (seats != null) {
+                synchronized (seats) {
+                    seatsAvailable = seats.seatsAvailable;
+                    if (!seats.availableByPrice.isEmpty()) {
+                        minPrice = seats.availableByPrice.firstKey();
+                        maxPrice = seats.availableByPrice.lastKey();
+                    }
+                }
+            }
+            availability.add(new ShowtimeAvailability(showtime.getShowtimeId(), showtime.getMovieId(),
+                    showtime.getShowDateTime(), showtime.getTotalSeats(), seatsAvailable, minPrice, maxPrice));
+        }
+        return availability;
+    }
 
-    // Static initializer block to populate sample data
-    static {
-        // Sample Users
-        users.add(new UserData("admin", "password"));
-        users.add(new UserData("user", "user"));
+    // --- Seats ---
 
-        // Sample Movies
-        Movie matrix = new Movie("The Matrix", "A computer hacker learns...", "Cineplex A");
-        Movie inception = new Movie("Inception", "A thief who enters dreams...", "Cineplex B");
-        Movie interstellar = new Movie("Interstellar", "Explorers travel through space...", "IMAX Theatre");
-        movies.add(matrix);
-        movies.add(inception);
-        movies.add(interstellar);
+    @Override
+    public SeatBitmap getSeatMap(int showtimeId) {
+        ShowtimeSeats seats = seatsByShowtime.get(showtimeId);
+        if (seats == null) return null;
+        synchronized (seats) {
+            return seats.snapshot(showtimeId);
+        }
+    }
 
-        // Sample Showtimes (Today and Tomorrow)
-        LocalDate today = LocalDate.now();
-        LocalDate tomorrow = today.plusDays(1);
-        LocalTime time10AM = LocalTime.of(10, 0);
-        LocalTime time1PM = LocalTime.of(13, 0);
-        LocalTime time4PM = LocalTime.of(16, 0);
-        LocalTime time7PM = LocalTime.of(19, 0);
+    @Override
+    public boolean initializeSeatsForShowtime(int showtimeId, int totalSeats, int cols) {
+        int maxSeats = Math.max(0, Math.min(totalSeats, SeatLayout.maxSeats(cols)));
+        SeatBitmap emptyMap = SeatBitmap.empty(showtimeId, maxSeats, cols);
+        seatsByShowtime.put(showtimeId, new ShowtimeSeats(emptyMap));
+        SeatMapSubscriptionService.seatMapChanged(emptyMap);
+        return true;
+    }
 
-        // Matrix Showtimes
-        showtimes.add(new Showtime(matrix.getMovieId(), LocalDateTime.of(today, time1PM), 64));
-        showtimes.add(new Showtime(matrix.getMovieId(), LocalDateTime.of(today, time7PM), 64));
-        showtimes.add(new Showtime(matrix.getMovieId(), LocalDateTime.of(tomorrow, time4PM), 64));
+    // Expiry is left to SeatHoldService: holds live and die with this process
+    @Override
+    public Map<Integer, Long> holdSeats(int showtimeId, int[] seatIds, String holdId, long expiresAtMillis) {
+        if (seatIds == null || seatIds.length == 0) return null;
+        ShowtimeSeats seats = seatsByShowtime.get(showtimeId);
+        if (seats == null) return null;
+        Map<Integer, Long> masks;
+        SeatBitmap updated;
+        synchronized (seats) {
+            int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, seats.cols, seats.totalSeats);
+            if (seatIndexes == null) return null;
+            masks = SeatBitmap.masksByWord(seatIndexes);
+            for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+                long taken = seats.booked[entry.getKey()] | seats.held[entry.getKey()];
+                if ((taken & entry.getValue()) != 0) return null;
+            }
+            masks.forEach((word, mask) -> seats.held[word] |= mask);
+            seats.holdIds.add(holdId);
+            updated = seats.snapshot(showtimeId);
+        }
+        SeatMapSubscriptionService.seatMapChanged(updated);
+        return masks;
+    }
 
-        // Inception Showtimes
-        showtimes.add(new Showtime(inception.getMovieId(), LocalDateTime.of(today, time10AM), 64));
-        showtimes.add(new Showtime(inception.getMovieId(), LocalDateTime.of(today, time4PM), 64));
-        showtimes.add(new Showtime(inception.getMovieId(), LocalDateTime.of(tomorrow, time1PM), 64));
-        showtimes.add(new Showtime(inception.getMovieId(), LocalDateTime.of(tomorrow, time7PM), 64));
+    // A hold's bits are cleared only while it is still recorded, i.e. not yet converted by a booking
+    @Override
+    public void releaseHeldSeats(Collection<SeatHoldService.SeatHold> holds) {
+        for (SeatHoldService.SeatHold hold : holds) {
+            ShowtimeSeats seats = seatsByShowtime.get(hold.getShowtimeId());
+            if (seats == null) continue;
+            SeatBitmap updated;
+            synchronized (seats) {
+                if (!seats.holdIds.remove(hold.getHoldId())) continue;
+                hold.getMasks().forEach((word, mask) -> {
+                    if (word < seats.held.length) seats.held[word] &= ~mask;
+                });
+                updated = seats.snapshot(hold.getShowtimeId());
+            }
+            SeatMapSubscriptionService.seatMapChanged(updated);
+        }
+    }
 
-        // Interstellar Showtimes
-        showtimes.add(new Showtime(interstellar.getMovieId(), LocalDateTime.of(today, time7PM), 64));
-        showtimes.add(new Showtime(interstellar.getMovieId(), LocalDateTime.of(tomorrow, time10AM), 64));
-        showtimes.add(new Showtime(interstellar.getMovieId(), LocalDateTime.of(tomorrow, time7PM), 64));
+    @Override
+    public boolean writeSeatMap(SeatBitmap seatMap) {
+        int showtimeId = seatMap.getShowtimeId();
+        ShowtimeSeats seats = seatsByShowtime.get(showtimeId);
+        if (seats == null || seats.totalSeats != seatMap.getTotalSeats() || seats.cols != seatMap.getCols()) {
+            seatsByShowtime.put(showtimeId, new ShowtimeSeats(seatMap));
+        } else {
+            synchronized (seats) {
+                System.arraycopy(seatMap.getBookedWords(), 0, seats.booked, 0, seats.booked.length);
+                System.arraycopy(seatMap.getHeldWords(), 0, seats.held, 0, seats.held.length);
+                seats.recount();
+            }
+        }
+        SeatMapSubscriptionService.seatMapChanged(seatMap);
+        return true;
     }
 
-    // --- Accessor Methods ---
+    // --- Bookings ---
 
-    public static Optional<UserData> findUser(String username) {
-        return users.stream()
-                    .filter(u -> u.getUsername().equalsIgnoreCase(username))
-                    .findFirst();
+    // The showtime's lock covers the seat check, the claim, the counters and the booking record, the same unit
+    // MongoBookingDAO commits in one transaction
+    @Override
+    public BookingResult addBooking(String requestKey, int userId, int showtimeId, int[] seats,
+                                    Collection<SeatHoldService.SeatHold> holds, Map<String, Integer> snacks, Map<String, Integer> snackPrices,
+                                    int seatCost, int snackCost, int totalCost) {
+        String existingBookingId = (requestKey != null) ? bookingObjectIdByRequestKey.get(requestKey) : null;
+        if (existingBookingId != null) return BookingResult.success(existingBookingId); // Replay
+        ShowtimeSeats showtimeSeats = seatsByShowtime.get(showtimeId);
+        if (showtimeSeats == null) {
+            System.err.println("Booking failed: no seat map for showtime " + showtimeId);
+            return BookingResult.failed();
+        }
+        int[] seatIds = (seats != null) ? seats.clone() : new int[0];
+        Booking booking;
+        SeatBitmap updated;
+        synchronized (showtimeSeats) {
+            existingBookingId = (requestKey != null) ? bookingObjectIdByRequestKey.get(requestKey) : null;
+            if (existingBookingId != null) return BookingResult.success(existingBookingId);
+            int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, showtimeSeats.cols, showtimeSeats.totalSeats);
+            if (seatIndexes == null) {
+                System.err.println("Invalid seat in " + SeatId.format(seatIds) + " for showtime " + showtimeId);
+                return BookingResult.failed();
+            }
+            // Our own holds (still recorded) are converted; a seat anyone else holds conflicts
+            List<SeatHoldService.SeatHold> ownHolds = SeatHoldService.coveredHolds(holds, showtimeId,
+                    SeatBitmap.masksByWord(seatIndexes));
+            ownHolds.removeIf(hold -> !showtimeSeats.holdIds.contains(hold.getHoldId()));
+            Map<Integer, Long> ownMasks = SeatHoldService.combinedMasks(ownHolds);
+            int[] conflicts = new int[seatIds.length];
+            int conflictCount = 0;
+            for (int i = 0; i < seatIndexes.length; i++) {
+                int word = SeatBitmap.wordIndex(seatIndexes[i]);
+                long bit = SeatBitmap.bitMask(seatIndexes[i]);
+                boolean heldByOthers = (showtimeSeats.held[word] & bit) != 0 && (ownMasks.getOrDefault(word, 0L) & bit) == 0;
+                if (showtimeSeats.isBooked(seatIndexes[i]) || heldByOthers) conflicts[conflictCount++] = seatIds[i];
+            }
+            if (conflictCount > 0) {
+                System.err.println("Booking rejected: seats " + SeatId.format(Arrays.copyOf(conflicts, conflictCount)) + " already taken for showtime " + showtimeId);
+                return BookingResult.conflict(Arrays.copyOf(conflicts, conflictCount));
+            }
+            for (int seatIndex : seatIndexes) showtimeSeats.book(seatIndex);
+            for (SeatHoldService.SeatHold hold : ownHolds) showtimeSeats.holdIds.remove(hold.getHoldId());
+            ownMasks.forEach((word, mask) -> showtimeSeats.held[word] &= ~mask);
+
+            booking = new Booking(new ObjectId().toHexString(), nextBookingId.getAndIncrement(), userId, showtimeId,
+                    LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS), // Cursor timestamps are Dates (ms)
+                    seatIds, (snacks != null) ? new HashMap<>(snacks) : new HashMap<>(),
+                    seatCost, snackCost, totalCost, "confirmed");
+            bookingsByObjectId.put(booking.getId(), booking);
+            bookingObjectIdByIntId.put(booking.getBookingId(), booking.getId());
+            bookingsByUser.computeIfAbsent(userId, id -> new ConcurrentSkipListMap<>()).put(BookingKey.of(booking), booking.getId());
+            if (requestKey != null) bookingObjectIdByRequestKey.put(requestKey, booking.getId());
+            updated = showtimeSeats.snapshot(showtimeId);
+        }
+        SeatMapSubscriptionService.seatMapChanged(updated);
+        return BookingResult.success(booking.getId());
     }
 
-    public static Movie getMovieById(int movieId) {
-         return movies.stream()
-                      .filter(m -> m.getMovieId() == movieId)
-                      .findFirst()
-                      .orElse(null); // Or throw exception
+    @Override
+    public boolean cancelBookingTransaction(String bookingMongoId, int showtimeId, int[] seatsToRelease) {
+        Booking booking = (bookingMongoId != null) ? bookingsByObjectId.get(bookingMongoId) : null;
+        ShowtimeSeats showtimeSeats = seatsByShowtime.get(showtimeId);
+        if (booking == null || booking.getShowtimeId() != showtimeId || showtimeSeats == null) {
+            System.err.println("Booking cancellation failed for ID " + bookingMongoId + ": booking or showtime not found");
+            return false;
+        }
+        SeatBitmap updated;
+        synchronized (showtimeSeats) {
+            Booking current = bookingsByObjectId.get(bookingMongoId); // Re-read: a concurrent cancel may have won
+            if (!"confirmed".equals(current.getStatus())) {
+                System.err.println("Booking cancellation failed for ID " + bookingMongoId + ": not 'confirmed'");
+                return false;
+            }
+            int[] seatIndexes = SeatBitmap.toSeatIndexes((seatsToRelease != null) ? seatsToRelease : new int[0],
+                    showtimeSeats.cols, showtimeSeats.totalSeats);
+            if (seatIndexes == null) return false;
+            for (int seatIndex : seatIndexes) showtimeSeats.release(seatIndex);
+            bookingsByObjectId.put(bookingMongoId, new Booking(current.getId(), current.getBookingId(), current.getUserId(),
+                    current.getShowtimeId(), current.getBookingTimestamp(), current.getSeatIds(),
+                    current.getSelectedSnacksWithQuantities(), current.getSeatCost(), current.getSnackCost(),
+                    current.getTotalCost(), "cancelled"));
+            updated = showtimeSeats.snapshot(showtimeId);
+        }
+        SeatMapSubscriptionService.seatMapChanged(updated);
+        return true;
     }
 
-     public static Showtime getShowtimeById(int showtimeId) {
-         return showtimes.stream()
-                         .filter(s -> s.getShowtimeId() == showtimeId)
-                         .findFirst()
-                         .orElse(null);
+    @Override
+    public List<Booking> getBookingsByUserId(int userId) {
+        List<Booking> bookings = new ArrayList<>();
+        NavigableMap<BookingKey, String> userBookings = bookingsByUser.get(userId);
+        if (userBookings == null) return bookings;
+        for (String bookingId : userBookings.descendingMap().values()) bookings.add(bookingsByObjectId.get(bookingId));
+        return bookings;
     }
 
-    public static List<Showtime> getShowtimesByDate(LocalDate date) {
-        return showtimes.stream()
-                        .filter(s -> s.getShowDateTime().toLocalDate().equals(date))
-                        .collect(Collectors.toList());
+    @Override
+    public Optional<Booking> getBookingByObjectId(String idString) {
+        return Optional.ofNullable((idString != null) ? bookingsByObjectId.get(idString) : null);
     }
 
-     // Find showtimes for a specific movie on a specific date/time
-    public static Optional<Showtime> findShowtime(int movieId, LocalDateTime dateTime) {
-         return showtimes.stream()
-                         .filter(s -> s.getMovieId() == movieId && s.getShowDateTime().equals(dateTime))
-                         .findFirst();
+    @Override
+    public Optional<Booking> getBookingByIntId(int bookingId) {
+        String objectId = bookingObjectIdByIntId.get(bookingId);
+        return Optional.ofNullable((objectId != null) ? bookingsByObjectId.get(objectId) : null);
     }
 
+    // Walks the user's sorted index from the cursor; a booked-since bound is a range start (oldest first) or an
+    // early stop (newest first), so only the status filter skips entries
+    @Override
+    public BookingPage getBookingHistoryPage(int userId, HistoryFilter historyFilter, HistoryCursor after, int pageSize) {
+        pageSize = Math.max(1, pageSize);
+        List<HistoryRow> rows = new ArrayList<>(pageSize);
+        NavigableMap<BookingKey, String> userBookings = bookingsByUser.get(userId);
+        if (userBookings == null) return new BookingPage(rows, null);
+
+        BookingKey since = (historyFilter.bookedSince != null) ? new BookingKey(historyFilter.bookedSince, MIN_OBJECT_ID) : null;
+        NavigableMap<BookingKey, String> view = historyFilter.newestFirst ? userBookings.descendingMap() : userBookings;
+        if (after != null) {
+            view = view.tailMap(new BookingKey(LocalDateTime.ofInstant(after.timestamp.toInstant(), ZoneOffset.UTC), after.id), false);
+        }
+        if (since != null && !historyFilter.newestFirst && after == null) view = view.tailMap(since, true);
 
-    public static void addBooking(Booking booking) {
-        bookings.add(booking);
+        HistoryCursor next = null;
+        BookingKey lastKey = null;
+        for (Map.Entry<BookingKey, String> entry : view.entrySet()) {
+            if (since != null && entry.getKey().compareTo(since) < 0) break; // Newest first: older from here on
+            Booking booking = bookingsByObjectId.get(entry.getValue());
+            if (historyFilter.status != null && !historyFilter.status.equals(booking.getStatus())) continue;
+            if (rows.size() == pageSize) {
+                next = new HistoryCursor(Date.from(lastKey.timestamp.toInstant(ZoneOffset.UTC)), lastKey.id);
+                break;
+            }
+            Showtime showtime = showtimesById.get(booking.getShowtimeId());
+            Movie movie = (showtime != null) ? moviesById.get(showtime.getMovieId()) : null;
+            rows.add(new HistoryRow(booking, (movie != null) ? movie.getTitle() : null,
+                    (showtime != null) ? showtime.getShowDateTime() : null));
+            lastKey = entry.getKey();
+        }
+        return new BookingPage(rows, next);
     }
 
-    public static List<Booking> getBookingsByUserId(int userId) {
-        return bookings.stream()
-                       .filter(b -> b.getUserId() == userId)
-                       .sorted((b1, b2) -> b2.getBookingTimestamp().compareTo(b1.getBookingTimestamp())) // Show newest first
-                       .collect(Collectors.toList());
+    // --- Records ---
+
+    private static final class UserRecord {
+        final UserData user;
+        final String password;
+
+        UserRecord(UserData user, String password) {
+            this.user = user;
+            this.password = password;
+        }
     }
 
-     public static Booking getBookingById(int bookingId) {
-         return bookings.stream()
-                        .filter(b -> b.getBookingId() == bookingId)
-                        .findFirst()
-                        .orElse(null);
+    // Sort key of the per-user booking index; same order as the (booking_timestamp, _id) index in MongoDB
+    private static final class BookingKey implements Comparable<BookingKey> {
+        final LocalDateTime timestamp;
+        final ObjectId id;
+
+        BookingKey(LocalDateTime timestamp, ObjectId id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+
+        static BookingKey of(Booking booking) {
+            return new BookingKey(booking.getBookingTimestamp(), new ObjectId(booking.getId()));
+        }
+
+        @Override
+        public int compareTo(BookingKey other) {
+            int byTime = timestamp.compareTo(other.timestamp);
+            return (byTime != 0) ? byTime : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BookingKey && compareTo((BookingKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return timestamp.hashCode() * 31 + id.hashCode();
+        }
     }
 
-    // Method to get all movies (for display)
-    public static List<Movie> getAllMovies() {
-        return new ArrayList<>(movies); // Return a copy
+    // One showtime's seat bitsets and availability counters; every access holds the instance's lock
+    private static final class ShowtimeSeats {
+        final int totalSeats;
+        final int cols;
+        final long[] booked;
+        final long[] held;
+        final Set<String> holdIds = new HashSet<>(); // Live holds; a hold's bits are only cleared while it is here
+        int seatsAvailable;
+        final TreeMap<Integer, Integer> availableByPrice = new TreeMap<>(); // Price -> seats left; no zero entries
+
+        ShowtimeSeats(SeatBitmap seatMap) {
+            this.totalSeats = seatMap.getTotalSeats();
+            this.cols = seatMap.getCols();
+            this.booked = seatMap.getBookedWords();
+            this.held = seatMap.getHeldWords();
+            recount();
+        }
+
+        void recount() {
+            seatsAvailable = 0;
+            availableByPrice.clear();
+            for (int seatIndex = 0; seatIndex < totalSeats; seatIndex++) {
+                if (!isBooked(seatIndex)) adjustCounters(seatIndex, +1);
+            }
+        }
+
+        boolean isBooked(int seatIndex) {
+            return (booked[SeatBitmap.wordIndex(seatIndex)] & SeatBitmap.bitMask(seatIndex)) != 0;
+        }
+
+        void book(int seatIndex) {
+            int word = SeatBitmap.wordIndex(seatIndex);
+            long mask = SeatBitmap.bitMask(seatIndex);
+            if ((booked[word] & mask) != 0) return;
+            booked[word] |= mask;
+            adjustCounters(seatIndex, -1);
+        }
+
+        void release(int seatIndex) {
+            int word = SeatBitmap.wordIndex(seatIndex);
+            long mask = SeatBitmap.bitMask(seatIndex);
+            if ((booked[word] & mask) == 0) return;
+            booked[word] &= ~mask;
+            adjustCounters(seatIndex, +1);
+        }
+
+        private void adjustCounters(int seatIndex, int direction) {
+            seatsAvailable += direction;
+            availableByPrice.merge(SeatLayout.getRowPrice(seatIndex / cols, SeatLayout.rowCount(totalSeats, cols)), direction,
+                    (count, delta) -> (count + delta == 0) ? null : count + delta);
+        }
+
+        SeatBitmap snapshot(int showtimeId) {
+            return new SeatBitmap(showtimeId, totalSeats, cols, booked.clone(), held.clone());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoClientException;
+
+// Thrown instead of running a database call while MongoHealth's circuit is open. A MongoException, so DAO
+// catch blocks treat it like any other driver failure; it carries no retry labels, so transactions don't retry it.
+public class DatabaseUnavailableException extends MongoClientException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,115 @@
+package movieticketbookingsystem.db;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs blocking DAO calls off the caller's thread (usually the EDT). One virtual thread per call on Java 21+,
+// a small daemon pool otherwise; a semaphore caps the calls in flight (-Ddb.maxConcurrency, default 16)
+// so a burst queues here instead of exhausting the Mongo connection pool. While MongoHealth's circuit is open,
+// calls fail at once with DatabaseUnavailableException (including ones that were queued when it opened).
+public class DbExecutor {
+
+    private static final int MAX_CONCURRENCY = Math.max(1, Integer.getInteger("db.maxConcurrency", 16));
+
+    private static volatile DbExecutor instance;
+
+    private final ExecutorService executor;
+    private final Semaphore permits = new Semaphore(MAX_CONCURRENCY, true);
+    private final boolean virtualThreads;
+
+    private DbExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = (virtual != null) ? virtual : newPlatformExecutor();
+    }
+
+    public static DbExecutor getInstance() {
+        DbExecutor local = instance;
+        if (local == null) {
+            synchronized (DbExecutor.class) {
+                local = instance;
+                if (local == null) {
+                    local = new DbExecutor();
+                    instance = local;
+                    System.out.println("DB executor: " + (local.virtualThreads ? "virtual threads" : "platform threads")
+                            + ", max " + MAX_CONCURRENCY + " concurrent calls");
+                }
+            }
+        }
+        return local;
+    }
+
+    // Lets calls in flight finish (bounded wait) and stops accepting new ones
+    public static void shutdown() {
+        DbExecutor local = instance;
+        if (local != null) {
+            local.executor.shutdown();
+            try {
+                local.executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            instance = null;
+        }
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+        MongoHealth health = MongoHealth.getInstance();
+        if (!health.allowRequest()) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(unavailable());
+            return rejected;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                if (!health.allowRequest()) throw unavailable(); // Opened while this call was queued
+                T result = call.get();
+                health.recordSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                health.recordFailure(e);
+                throw e;
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    private static DatabaseUnavailableException unavailable() {
+        return new DatabaseUnavailableException("Database unavailable, call not attempted");
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when running on a JDK that has it
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(MAX_CONCURRENCY, r -> {
+            Thread t = new Thread(r, "db-call-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package movieticketbookingsystem.db;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Hashed timer wheel: O(1) schedule/cancel, one worker thread, expired entries delivered in one batch per tick.
+// Only the worker touches the buckets; new timeouts are handed over through a queue.
+public class HashedTimerWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> onExpire;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick; // Worker thread only
+
+    public HashedTimerWheel(String name, long tickMillis, int wheelSize, Consumer<List<T>> onExpire) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1; // Round up to a power of two
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) wheel.add(new LinkedList<>());
+        this.mask = size - 1;
+        this.onExpire = onExpire;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Timeout<T> schedule(T item, long delay, TimeUnit unit) {
+        long deadlineTick = (System.nanoTime() - startNanos + unit.toNanos(delay)) / TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        Timeout<T> timeout = new Timeout<>(item, Math.max(deadlineTick, 0));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long nextTickNanos = startNanos + (tick + 1) * TimeUnit.MILLISECONDS.toNanos(tickMillis);
+            long sleepNanos = nextTickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+                continue;
+            }
+            transferPending();
+            List<T> expired = expireBucket();
+            tick++;
+            if (!expired.isEmpty()) {
+                try {
+                    onExpire.accept(expired);
+                } catch (Exception e) {
+                    System.err.println("Timer wheel expiry handler failed: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            long target = Math.max(timeout.deadlineTick, tick); // Already due -> current bucket
+            timeout.remainingRounds = (target - tick) / wheel.size();
+            wheel.get((int) (target & mask)).add(timeout);
+        }
+    }
+
+    private List<T> expireBucket() {
+        List<T> expired = new ArrayList<>();
+        Iterator<Timeout<T>> it = wheel.get((int) (tick & mask)).iterator();
+        while (it.hasNext()) {
+            Timeout<T> timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                it.remove();
+                if (timeout.state.compareAndSet(false, true)) expired.add(timeout.item);
+            }
+        }
+        return expired;
+    }
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private final AtomicBoolean state = new AtomicBoolean(false); // true once cancelled or expired
+        private volatile boolean cancelled;
+        private long remainingRounds;
+
+        Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // Returns false if the timeout already fired
+        public boolean cancel() {
+            if (state.compareAndSet(false, true)) {
+                cancelled = true;
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+}
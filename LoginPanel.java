@@ -1,5 +1,7 @@
 package movieticketbookingsystem;
 
+import movieticketbookingsystem.db.DaoRegistry;
+import movieticketbookingsystem.db.SchemaBootstrap;
 import movieticketbookingsystem.db.UserDAO; // Import DAO
 
 import javax.swing.*;
@@ -15,11 +17,16 @@ public class LoginPanel extends JPanel {
     private JLabel statusLabel;
     private MovieTicketBookingSystem mainApp;
     private UserDAO userDAO; // DAO instance
+    private PanelLoader loginLoader;
 
     public LoginPanel(MovieTicketBookingSystem mainApp) {
         this.mainApp = mainApp;
-        this.userDAO = new UserDAO(); // Instantiate DAO
+        this.userDAO = DaoRegistry.getInstance().getUserDAO(); // Shared DAO
         setupUI(); // Separate method for UI setup
+        this.loginLoader = new PanelLoader("login", this, state -> {
+            loginButton.setEnabled(!loginLoader.isLoading());
+            if (loginLoader.isLoading()) statusLabel.setText("Signing in...");
+        });
     }
 
     private void setupUI() {
@@ -47,10 +54,13 @@ public class LoginPanel extends JPanel {
             return;
         }
 
-        // Use DAO to find and verify user
+        // Use DAO to find and verify user (in the background; on first launch this also waits for the sample users)
         // TODO: Replace plain 'password' with bcrypt hashing/checking here and in DAO
-        Optional<UserData> userOpt = userDAO.findUserAndVerifyPassword(username, password);
+        loginLoader.loadAfter(SchemaBootstrap.start(), () -> userDAO.findUserAndVerifyPassword(username, password),
+                this::handleLoginResult, error -> statusLabel.setText("Cannot reach the server. Please try again."));
+    }
 
+    private void handleLoginResult(Optional<UserData> userOpt) {
         if (userOpt.isPresent()) {
             statusLabel.setText(" ");
             UserData loggedInUser = userOpt.get();
@@ -0,0 +1,306 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.TransactionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.*;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes; // Correct import
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult; // Import UpdateResult
+import com.mongodb.bulk.BulkWriteResult;
+import movieticketbookingsystem.Booking;
+import movieticketbookingsystem.SeatId;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*; // List, Map, ArrayList, HashMap, Date
+import com.mongodb.client.MongoClient;
+
+// BookingDAO on the 'bookings' collection; booking and cancellation are MongoDB transactions that also update
+// the seat map and the showtime's availability counters
+public class MongoBookingDAO implements BookingDAO {
+
+    private final MongoCollection<Document> bookingsCollection;
+    private final MongoSeatDAO seatDAO;
+    private final MongoShowtimeDAO showtimeDAO; // Availability counters
+
+    // Shared instance comes from DaoRegistry; indexes are created by SchemaBootstrap
+    MongoBookingDAO(MongoSeatDAO seatDAO, MongoShowtimeDAO showtimeDAO) {
+        MongoDatabase database = MongoConnector.getDatabase(); // Get DB to get collection
+        this.bookingsCollection = database.getCollection("bookings");
+        this.seatDAO = seatDAO;
+        this.showtimeDAO = showtimeDAO;
+    }
+
+    // One createIndexes round trip (a no-op on the server when they all exist)
+    @Override
+    public void ensureSchema() {
+        try {
+             bookingsCollection.createIndexes(Arrays.asList(
+                     new IndexModel(Indexes.ascending("user_id")),
+                     new IndexModel(Indexes.ascending("showtime_id")),
+                     // Keyset pagination of a user's history, either direction (see getBookingHistoryPage)
+                     new IndexModel(Indexes.compoundIndex(Indexes.ascending("user_id"),
+                             Indexes.descending("booking_timestamp"), Indexes.descending("_id"))),
+                     // Same, filtered by status
+                     new IndexModel(Indexes.compoundIndex(Indexes.ascending("user_id"), Indexes.ascending("status"),
+                             Indexes.descending("booking_timestamp"), Indexes.descending("_id"))),
+                     // Idempotency keys: at most one booking per client request (bookings without a key are not indexed)
+                     new IndexModel(Indexes.ascending("request_key"), new IndexOptions().unique(true).sparse(true))));
+        } catch (Exception e) {
+             System.err.println("Index creation for bookings might have failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public BookingResult addBooking(String requestKey, int userId, int showtimeId, int[] seats,
+                                    Collection<SeatHoldService.SeatHold> holds, Map<String, Integer> snacks, Map<String, Integer> snackPrices,
+                                    int seatCost, int snackCost, int totalCost) {
+
+        // Replay of a request that already committed: one indexed lookup, no seat checks or writes
+        String existingBookingId = findBookingIdByRequestKey(null, requestKey);
+        if (existingBookingId != null) {
+            System.out.println("Replayed booking request " + requestKey + " -> booking " + existingBookingId);
+            return BookingResult.success(existingBookingId);
+        }
+
+        // In-memory inventory (single-node mode) claims the seats up front, without a DB round trip
+        final SeatInventory inventory = SeatInventory.isEnabled() ? SeatInventory.getInstance() : null;
+        if (inventory != null && !inventory.claim(showtimeId, seats, holds)) {
+            existingBookingId = findBookingIdByRequestKey(null, requestKey); // The original may have committed meanwhile
+            if (existingBookingId != null) return BookingResult.success(existingBookingId);
+            System.err.println("Booking rejected: seats " + SeatId.format(seats) + " no longer available for showtime " + showtimeId);
+            return BookingResult.conflict(inventory.findTaken(showtimeId, seats, holds));
+        }
+
+        // --- Start session using MongoClient from Connector ---
+        try (ClientSession clientSession = MongoConnector.getMongoClient().startSession()) { // <-- CORRECTED LINE
+            final String[] bookingMongoId = {null};
+            final boolean[] replayed = {false};
+            // Id from this kiosk's reserved block: no read inside the transaction, no shared max-id document
+            final int nextBookingId = SequenceService.getInstance().nextId(SequenceService.BOOKING_ID);
+
+            TransactionOptions txnOptions = TransactionOptions.builder()
+                    .readPreference(ReadPreference.primary())
+                    .readConcern(ReadConcern.LOCAL)
+                    .writeConcern(WriteConcern.MAJORITY).build();
+
+            // Transient errors (write conflicts, unknown commit results) are retried with backoff by TransactionRunner
+            TransactionRunner.getInstance().run(clientSession, txnOptions, showtimeId, "booking", session -> {
+                // 0. Idempotency check inside the transaction (the unique index catches a concurrent replay at commit)
+                String originalBookingId = findBookingIdByRequestKey(clientSession, requestKey);
+                if (originalBookingId != null) {
+                    bookingMongoId[0] = originalBookingId;
+                    replayed[0] = true;
+                    return "Replayed";
+                }
+                // 1. Claim seats: one conditional update converting our holds (already claimed in memory when the inventory is enabled)
+                if (inventory == null) {
+                    MongoSeatDAO.SeatClaimResult claim = seatDAO.claimSeats(clientSession, showtimeId, seats, holds);
+                    if (!claim.isSuccess()) throw new SeatConflictException(claim.getConflictingSeats());
+                }
+                showtimeDAO.adjustAvailability(clientSession, showtimeId, seats, -1);
+                // 2. Prepare Booking Document (same logic)
+                 List<Document> snacksDocList = new ArrayList<>(); if (snacks != null) { snacks.forEach((name, qty) -> snacksDocList.add(new Document("snack_name", name).append("quantity", qty).append("price_per_item", snackPrices.getOrDefault(name, 0)))); }
+                
+                 Document newBooking = new Document("booking_id", nextBookingId).append("user_id", userId).append("showtime_id", showtimeId).append("booking_timestamp", Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC))).append("seat_ids", toIntList(seats)).append("snacks", snacksDocList).append("seat_cost", seatCost).append("snack_cost", snackCost).append("total_cost", totalCost).append("status", "confirmed");
+                 if (requestKey != null) newBooking.append("request_key", requestKey);
+
+                // 3. Insert Booking Document (same logic)
+                 InsertOneResult insertResult = bookingsCollection.insertOne(clientSession, newBooking); if (!insertResult.wasAcknowledged() || insertResult.getInsertedId() == null) { throw new RuntimeException("Booking insertion failed."); } bookingMongoId[0] = insertResult.getInsertedId().asObjectId().getValue().toHexString();
+
+                System.out.println("Transaction successful for booking " + bookingMongoId[0]);
+                return "Committed";
+            });
+
+            if (inventory != null) {
+                if (replayed[0]) inventory.release(showtimeId, seats); // The original booking owns the seats
+                else inventory.persist(showtimeId); // Seat bits written asynchronously
+            }
+            return BookingResult.success(bookingMongoId[0]); // Return ID if successful
+
+        } catch (SeatConflictException e) {
+            System.err.println("Booking rejected: seats " + SeatId.format(e.getConflictingSeats()) + " already taken for showtime " + showtimeId);
+            return BookingResult.conflict(e.getConflictingSeats());
+        } catch (Exception e) { // Catch broader exceptions during session/transaction
+            if (inventory != null) inventory.release(showtimeId, seats); // Undo the in-memory claim
+            if (isDuplicateKey(e)) {
+                // A concurrent replay of the same request committed first
+                existingBookingId = findBookingIdByRequestKey(null, requestKey);
+                if (existingBookingId != null) return BookingResult.success(existingBookingId);
+            }
+            System.err.println("Booking transaction failed: " + e.getMessage());
+            e.printStackTrace();
+            return BookingResult.failed(); // Indicate failure
+        }
+    }
+
+    // Id of the booking created for this request key, or null (also null for a null key or on error)
+    private String findBookingIdByRequestKey(ClientSession session, String requestKey) {
+        if (requestKey == null) return null;
+        try {
+            Bson filter = Filters.eq("request_key", requestKey);
+            Document doc = ((session != null) ? bookingsCollection.find(session, filter) : bookingsCollection.find(filter))
+                    .projection(new Document("_id", 1)).first();
+            return (doc != null) ? doc.getObjectId("_id").toHexString() : null;
+        } catch (Exception e) {
+            if (session != null) throw e; // Let TransactionRunner retry or abort
+            System.err.println("Error looking up booking request " + requestKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isDuplicateKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException && ((MongoException) t).getCode() == 11000) return true;
+        }
+        return false;
+    }
+
+    // cancelBookingTransaction needs the same fix for starting the session
+    @Override
+    public boolean cancelBookingTransaction(String bookingMongoId, int showtimeId, int[] seatsToRelease) {
+         final SeatInventory inventory = SeatInventory.isEnabled() ? SeatInventory.getInstance() : null;
+
+         // --- Start session using MongoClient from Connector ---
+         try (ClientSession clientSession = MongoConnector.getMongoClient().startSession()) { // <-- CORRECTED LINE
+
+            TransactionOptions txnOptions = TransactionOptions.builder()
+                    .readPreference(ReadPreference.primary())
+                    .readConcern(ReadConcern.LOCAL)
+                    .writeConcern(WriteConcern.MAJORITY).build();
+
+            // Transient errors are retried with backoff by TransactionRunner
+            TransactionRunner.getInstance().run(clientSession, txnOptions, showtimeId, "cancellation", session -> {
+                ObjectId objectId; try { objectId = new ObjectId(bookingMongoId); } catch (IllegalArgumentException e) { throw new RuntimeException("Invalid Booking ID format."); }
+                 UpdateResult updateResult = bookingsCollection.updateOne(clientSession, Filters.and(Filters.eq("_id", objectId), Filters.eq("status", "confirmed")), Updates.set("status", "cancelled"));
+                 if (updateResult.getMatchedCount() == 0) { throw new RuntimeException("Booking not found or not 'confirmed'."); }
+                 if (inventory == null && !seatDAO.updateSeatStatusBulk(clientSession, showtimeId, seatsToRelease, "booked", "available").isSuccess()) { throw new RuntimeException("Failed to release booked seats."); }
+                 showtimeDAO.adjustAvailability(clientSession, showtimeId, seatsToRelease, +1);
+                 System.out.println("Transaction successful for cancelling booking " + bookingMongoId); return "Committed";
+             });
+
+             if (inventory != null) inventory.release(showtimeId, seatsToRelease); // Released in memory, written asynchronously
+
+             return true; // Transaction succeeded
+
+         } catch (Exception e) { // Catch broader exceptions
+             System.err.println("Booking cancellation transaction failed for ID " + bookingMongoId + ": " + e.getMessage());
+             e.printStackTrace();
+             return false; // Indicate failure
+         }
+    }
+
+
+    // --- Paginated history ---
+
+    // Only the fields the history table shows (plus legacy seats for old documents)
+    private static final Document HISTORY_PROJECTION = new Document("showtime_id", 1).append("booking_timestamp", 1)
+            .append("seat_ids", 1).append("booked_seats", 1).append("snacks.snack_name", 1).append("snacks.quantity", 1)
+            .append("total_cost", 1).append("status", 1);
+
+    // Showtime and movie title are resolved by $lookup in the same aggregation: one round trip per page whatever
+    // its size. Status/date filtering and sorting happen on the server, and pages go by keyset on
+    // (booking_timestamp, _id) through the compound indexes, so every page costs the same however many bookings
+    // the user has.
+    @Override
+    public BookingPage getBookingHistoryPage(int userId, HistoryFilter historyFilter, HistoryCursor after, int pageSize) {
+        pageSize = Math.max(1, pageSize);
+        List<HistoryRow> rows = new ArrayList<>(pageSize);
+        List<Bson> conditions = new ArrayList<>();
+        conditions.add(Filters.eq("user_id", userId));
+        if (historyFilter.status != null) conditions.add(Filters.eq("status", historyFilter.status));
+        if (historyFilter.bookedSince != null) {
+            conditions.add(Filters.gte("booking_timestamp", Date.from(historyFilter.bookedSince.toInstant(ZoneOffset.UTC))));
+        }
+        if (after != null) {
+            conditions.add(historyFilter.newestFirst
+                    ? Filters.or(Filters.lt("booking_timestamp", after.timestamp),
+                            Filters.and(Filters.eq("booking_timestamp", after.timestamp), Filters.lt("_id", after.id)))
+                    : Filters.or(Filters.gt("booking_timestamp", after.timestamp),
+                            Filters.and(Filters.eq("booking_timestamp", after.timestamp), Filters.gt("_id", after.id))));
+        }
+        Bson order = historyFilter.newestFirst
+                ? Sorts.orderBy(Sorts.descending("booking_timestamp"), Sorts.descending("_id"))
+                : Sorts.orderBy(Sorts.ascending("booking_timestamp"), Sorts.ascending("_id"));
+        HistoryCursor next = null;
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.and(conditions)),
+                Aggregates.sort(order),
+                Aggregates.limit(pageSize + 1), // One extra row tells us whether another page exists
+                Aggregates.project(HISTORY_PROJECTION),
+                Aggregates.lookup("showtimes", "showtime_id", "showtime_id", "showtime"),
+                Aggregates.lookup("movies", "showtime.movie_id", "movie_id", "movie"),
+                Aggregates.project(new Document(HISTORY_PROJECTION)
+                        .append("show_datetime", new Document("$arrayElemAt", Arrays.asList("$showtime.show_datetime", 0)))
+                        .append("movie_title", new Document("$arrayElemAt", Arrays.asList("$movie.title", 0)))));
+        try (MongoCursor<Document> cursor = bookingsCollection.aggregate(pipeline).iterator()) {
+            Document lastDoc = null;
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                if (rows.size() == pageSize) {
+                    next = new HistoryCursor(lastDoc.getDate("booking_timestamp"), lastDoc.getObjectId("_id"));
+                    break;
+                }
+                Date showDate = doc.getDate("show_datetime");
+                rows.add(new HistoryRow(mapDocumentToBooking(doc), doc.getString("movie_title"),
+                        (showDate != null) ? LocalDateTime.ofInstant(showDate.toInstant(), ZoneOffset.UTC) : null));
+                lastDoc = doc;
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching booking history page for user " + userId + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return new BookingPage(rows, next);
+    }
+
+    // getBookingsByUserId, getBookingByObjectId, getBookingByIntId, mapDocumentToBooking methods remain the same
+     @Override
+     public List<Booking> getBookingsByUserId(int userId) { /* Same */ List<Booking> bookings = new ArrayList<>(); Document query = new Document("user_id", userId); try (MongoCursor<Document> cursor = bookingsCollection.find(query).sort(Sorts.descending("booking_timestamp")).iterator()) { while (cursor.hasNext()) { bookings.add(mapDocumentToBooking(cursor.next())); } } catch (Exception e) { System.err.println("Error fetching bookings for user " + userId + ": " + e.getMessage()); e.printStackTrace(); } return bookings; }
+     @Override
+     public Optional<Booking> getBookingByObjectId(String idString) { /* Same */ try { ObjectId oid = new ObjectId(idString); Document doc = bookingsCollection.find(Filters.eq("_id", oid)).first(); if (doc != null) return Optional.of(mapDocumentToBooking(doc)); } catch (IllegalArgumentException e) { System.err.println("Invalid ObjectId: " + idString); } catch (Exception e) { System.err.println("Error fetching booking by ObjectId " + idString + ": " + e.getMessage()); e.printStackTrace(); } return Optional.empty(); }
+     @Override
+     public Optional<Booking> getBookingByIntId(int bookingId) { /* Same */ try { Document doc = bookingsCollection.find(Filters.eq("booking_id", bookingId)).first(); if (doc != null) return Optional.of(mapDocumentToBooking(doc)); } catch (Exception e) { System.err.println("Error fetching booking by int ID " + bookingId + ": " + e.getMessage()); e.printStackTrace(); } return Optional.empty(); }
+     private Booking mapDocumentToBooking(Document doc) { /* Same */ ObjectId oid = doc.getObjectId("_id"); Date tsDate = doc.getDate("booking_timestamp"); LocalDateTime ts = (tsDate != null) ? LocalDateTime.ofInstant(tsDate.toInstant(), ZoneOffset.UTC) : null; int[] seats = readSeatIds(doc); Map<String, Integer> snacks = new HashMap<>(); List<Document> snacksDocs = doc.getList("snacks", Document.class, new ArrayList<>()); snacksDocs.forEach(sd -> snacks.put(sd.getString("snack_name"), sd.getInteger("quantity"))); return new Booking(oid != null ? oid.toHexString() : null, doc.getInteger("booking_id", -1), doc.getInteger("user_id", -1), doc.getInteger("showtime_id", -1), ts, seats, snacks, doc.getInteger("seat_cost", 0), doc.getInteger("snack_cost", 0), doc.getInteger("total_cost", 0), doc.getString("status")); }
+
+
+    // Seats are stored as SeatId ints; bookings written before that carry "A1"-style strings in 'booked_seats'
+    private static int[] readSeatIds(Document doc) {
+        List<Integer> seatIds = doc.getList("seat_ids", Integer.class);
+        if (seatIds == null) return SeatId.parseAll(doc.getList("booked_seats", String.class, new ArrayList<>()));
+        int[] seats = new int[seatIds.size()];
+        for (int i = 0; i < seats.length; i++) seats[i] = seatIds.get(i);
+        return seats;
+    }
+
+    private static List<Integer> toIntList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) list.add(value);
+        return list;
+    }
+
+    // Aborts the transaction when the conditional seat claim loses a race
+    private static final class SeatConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int[] conflictingSeats;
+
+        SeatConflictException(int[] conflictingSeats) {
+            super("Seat conflict: " + SeatId.format(conflictingSeats));
+            this.conflictingSeats = conflictingSeats;
+        }
+
+        int[] getConflictingSeats() { return conflictingSeats; }
+    }
+}
\ No newline at end of file
@@ -5,71 +5,152 @@ import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
 import com.mongodb.ServerApi;
 import com.mongodb.ServerApiVersion;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class MongoConnector {
 
     // --- Configuration ---
-    // Default connection string for local MongoDB without auth
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
+    // Default connection string for local MongoDB without auth; override with -Dmongo.uri
+    private static final String CONNECTION_STRING = System.getProperty("mongo.uri", "mongodb://localhost:27017");
     // Alternative if using Atlas or specific auth:
-    // private static final String CONNECTION_STRING = "mongodb+srv://<username>:<password>@<cluster-url>/<database_name>?retryWrites=true&w=majority";
-    private static final String DATABASE_NAME = "movie_ticket_db_mongo"; // Database name
+    // -Dmongo.uri=mongodb+srv://<username>:<password>@<cluster-url>/<database_name>?retryWrites=true&w=majority
+    private static final String DATABASE_NAME = System.getProperty("mongo.database", "movie_ticket_db_mongo"); // Database name
+
+    // Pool and timeouts: a -D property wins, then the same option in the connection string, then the default.
+    // The pool must cover DbExecutor's cap (-Ddb.maxConcurrency, default 16) plus the change stream watchers.
+    private static final int DEFAULT_MAX_POOL_SIZE = 32;          // -Dmongo.maxPoolSize (driver default 100)
+    private static final int DEFAULT_MIN_POOL_SIZE = 2;           // -Dmongo.minPoolSize, kept warm for the first clicks
+    private static final int DEFAULT_MAX_CONNECTING = 2;          // -Dmongo.maxConnecting, new connections opened at once
+    private static final int DEFAULT_MAX_WAIT_MS = 2000;          // -Dmongo.maxWaitMs, checkout wait before failing (driver default 2 min)
+    private static final int DEFAULT_MAX_IDLE_MS = 300000;        // -Dmongo.maxIdleMs
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;   // -Dmongo.connectTimeoutMs
+    private static final int DEFAULT_SOCKET_TIMEOUT_MS = 0;       // -Dmongo.socketTimeoutMs, 0 = none (change streams block in getMore)
+    private static final int DEFAULT_SERVER_SELECTION_MS = 5000;  // -Dmongo.serverSelectionTimeoutMs
+    // -Dmongo.compressors, e.g. "zstd,snappy,zlib" (zstd/snappy need their libraries); none by default
     // --- ---
 
-    private static MongoClient mongoClient = null;
-    private static MongoDatabase database = null;
+    // Set once under the class lock; volatile so the unsynchronized fast path in the getters sees a complete client
+    private static volatile MongoClient mongoClient = null;
+    private static volatile MongoDatabase database = null;
 
     private MongoConnector() {} // Private constructor
 
-    private static void initialize() {
+    // Creates the client without waiting for the server: the driver connects in the background and MongoHealth's
+    // prober reports when the database answers, so DAOs can be built (and the UI shown) while MongoDB is down.
+    // Only a bad configuration (e.g. a malformed URI) throws.
+    private static synchronized void initialize() {
         if (mongoClient == null) {
             try {
                  ConnectionString connectionString = new ConnectionString(CONNECTION_STRING);
+                 MongoMetrics metrics = MongoMetrics.getInstance();
+                 MongoHealth health = MongoHealth.getInstance();
+                 int maxPoolSize = setting("mongo.maxPoolSize", connectionString.getMaxConnectionPoolSize(), DEFAULT_MAX_POOL_SIZE);
+                 int minPoolSize = Math.min(maxPoolSize, setting("mongo.minPoolSize", connectionString.getMinConnectionPoolSize(), DEFAULT_MIN_POOL_SIZE));
+                 int maxConnecting = setting("mongo.maxConnecting", connectionString.getMaxConnecting(), DEFAULT_MAX_CONNECTING);
+                 int maxWaitMs = setting("mongo.maxWaitMs", connectionString.getMaxWaitTime(), DEFAULT_MAX_WAIT_MS);
+                 int maxIdleMs = setting("mongo.maxIdleMs", connectionString.getMaxConnectionIdleTime(), DEFAULT_MAX_IDLE_MS);
+                 int connectTimeoutMs = setting("mongo.connectTimeoutMs", connectionString.getConnectTimeout(), DEFAULT_CONNECT_TIMEOUT_MS);
+                 int socketTimeoutMs = setting("mongo.socketTimeoutMs", connectionString.getSocketTimeout(), DEFAULT_SOCKET_TIMEOUT_MS);
+                 int serverSelectionMs = setting("mongo.serverSelectionTimeoutMs", connectionString.getServerSelectionTimeout(), DEFAULT_SERVER_SELECTION_MS);
+                 List<MongoCompressor> compressors = compressors(connectionString);
+                 metrics.setMaxPoolSize(maxPoolSize);
+
                  MongoClientSettings settings = MongoClientSettings.builder()
                          .applyConnectionString(connectionString)
                          .serverApi(ServerApi.builder()
                                  .version(ServerApiVersion.V1) // Use Stable API
                                  .build())
+                         .applyToConnectionPoolSettings(pool -> pool
+                                 .maxSize(maxPoolSize)
+                                 .minSize(minPoolSize)
+                                 .maxConnecting(maxConnecting)
+                                 .maxWaitTime(maxWaitMs, TimeUnit.MILLISECONDS)
+                                 .maxConnectionIdleTime(maxIdleMs, TimeUnit.MILLISECONDS)
+                                 .addConnectionPoolListener(metrics))
+                         .applyToSocketSettings(socket -> socket
+                                 .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                                 .readTimeout(socketTimeoutMs, TimeUnit.MILLISECONDS))
+                         .applyToClusterSettings(cluster -> cluster
+                                 .serverSelectionTimeout(serverSelectionMs, TimeUnit.MILLISECONDS)
+                                 .addClusterListener(health))
+                         .compressorList(compressors)
+                         .addCommandListener(metrics)
                          .build();
+                 System.out.println("MongoDB pool: max " + maxPoolSize + ", min " + minPoolSize + ", max wait " + maxWaitMs
+                         + " ms, connect timeout " + connectTimeoutMs + " ms, socket timeout " + socketTimeoutMs
+                         + " ms, compression " + (compressors.isEmpty() ? "off" : compressors));
 
-                 mongoClient = MongoClients.create(settings);
-                 database = mongoClient.getDatabase(DATABASE_NAME);
-                 database.runCommand(new org.bson.Document("ping", 1)); // Verify connection
-                System.out.println("Successfully connected to MongoDB database: " + DATABASE_NAME);
+                 MongoClient client = MongoClients.create(settings);
+                 database = client.getDatabase(DATABASE_NAME);
+                 mongoClient = client; // Published last: getDatabase's fast path checks database, getMongoClient this
+                 health.startProbing(database); // First ping right away; logs once connected
 
             } catch (Exception e) {
-                System.err.println("FATAL ERROR: Failed to connect to MongoDB!");
+                System.err.println("FATAL ERROR: Invalid MongoDB configuration!");
                 e.printStackTrace();
                 throw new RuntimeException("Failed to initialize MongoDB connection", e);
             }
         }
     }
 
+    private static int setting(String property, Integer fromConnectionString, int defaultValue) {
+        Integer fromProperty = Integer.getInteger(property);
+        if (fromProperty != null) return fromProperty;
+        return (fromConnectionString != null) ? fromConnectionString : defaultValue;
+    }
+
+    private static List<MongoCompressor> compressors(ConnectionString connectionString) {
+        String names = System.getProperty("mongo.compressors");
+        if (names == null) return connectionString.getCompressorList();
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "zstd": compressors.add(MongoCompressor.createZstdCompressor()); break;
+                case "snappy": compressors.add(MongoCompressor.createSnappyCompressor()); break;
+                case "zlib": compressors.add(MongoCompressor.createZlibCompressor()); break;
+                case "": break;
+                default: System.err.println("Ignoring unknown MongoDB compressor: " + name);
+            }
+        }
+        return compressors;
+    }
+
     public static MongoDatabase getDatabase() {
-        if (database == null) {
+        MongoDatabase local = database;
+        if (local == null) {
             initialize();
+            local = database;
         }
-        return database;
+        return local;
     }
 
-    public static void close() {
+    public static synchronized void close() {
+        MongoHealth.getInstance().stopProbing();
         if (mongoClient != null) {
             try {
                 mongoClient.close();
-                mongoClient = null;
-                database = null;
                 System.out.println("MongoDB connection closed.");
             } catch (Exception e) {
                 System.err.println("Error closing MongoDB connection: " + e.getMessage());
+            } finally {
+                mongoClient = null;
+                database = null;
             }
         }
     }
+
     public static MongoClient getMongoClient() {
-        if (mongoClient == null) {
+        MongoClient local = mongoClient;
+        if (local == null) {
             initialize();
+            local = mongoClient;
         }
-        return mongoClient;
+        return local;
     }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ClusterType;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListener;
+import org.bson.Document;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+// Circuit breaker in front of DbExecutor. While the database is known to be unreachable (no writable server
+// in the driver's cluster view, a failed health probe, or -Dmongo.breakerFailures consecutive connection
+// errors from calls, default 3) the circuit is open and DbExecutor fails calls at once with
+// DatabaseUnavailableException instead of letting each one block for the server selection timeout. A daemon
+// prober pings every -Dmongo.healthProbeMs (default 2000) and, like the cluster listener seeing a primary again,
+// closes the circuit when the database answers. State and counters are exported over JMX as
+// movieticketbookingsystem:type=MongoHealth.
+public class MongoHealth implements ClusterListener {
+
+    public enum State { CLOSED, OPEN }
+
+    private static final long PROBE_INTERVAL_MS = Math.max(100, Long.getLong("mongo.healthProbeMs", 2000));
+    private static final int FAILURE_THRESHOLD = Math.max(1, Integer.getInteger("mongo.breakerFailures", 3));
+
+    private static volatile MongoHealth instance;
+
+    private volatile State state = State.CLOSED; // Optimistic until the first probe or cluster event says otherwise
+    private volatile boolean everConnected;
+    private volatile long lastProbeMillis = -1;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder openings = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final Metrics metrics = new Metrics();
+    private ScheduledExecutorService prober; // Guarded by this
+
+    private MongoHealth() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("movieticketbookingsystem:type=MongoHealth"));
+        } catch (Exception e) {
+            System.err.println("Could not register MongoDB health metrics: " + e.getMessage());
+        }
+    }
+
+    public static MongoHealth getInstance() {
+        MongoHealth local = instance;
+        if (local == null) {
+            synchronized (MongoHealth.class) {
+                local = instance;
+                if (local == null) {
+                    local = new MongoHealth();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public MongoHealthMXBean getMetrics() {
+        return metrics;
+    }
+
+    public boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // DbExecutor asks before running each call; false means fail fast
+    boolean allowRequest() {
+        if (state == State.CLOSED) return true;
+        rejectedCalls.increment();
+        return false;
+    }
+
+    // --- Signals ---
+
+    // From DbExecutor: exceptions that escaped a call. Only connectivity errors count toward opening.
+    void recordFailure(Throwable error) {
+        if (!isConnectivityFailure(error)) return;
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD) open("calls failing: " + error.getMessage());
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    // The driver's monitors noticed a change (server down, primary stepped down or elected, etc.)
+    @Override
+    public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+        ClusterDescription description = event.getNewDescription();
+        if (description.hasWritableServer()) {
+            close("primary available");
+            return;
+        }
+        // Before the first heartbeat the cluster is UNKNOWN with no errors: that is "not yet known", not "down"
+        boolean anyServerFailed = false;
+        for (ServerDescription server : description.getServerDescriptions()) {
+            if (server.getException() != null) anyServerFailed = true;
+        }
+        if (anyServerFailed || description.getType() != ClusterType.UNKNOWN) open("no writable server");
+    }
+
+    // --- Prober ---
+
+    synchronized void startProbing(MongoDatabase database) {
+        if (prober != null) return;
+        prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mongo-health-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        prober.scheduleWithFixedDelay(() -> probe(database), 0, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stopProbing() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    // Blocks up to the server selection timeout when the database is down; only the prober thread waits
+    private void probe(MongoDatabase database) {
+        long startNanos = System.nanoTime();
+        try {
+            database.runCommand(new Document("ping", 1));
+            lastProbeMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            if (!everConnected) {
+                everConnected = true;
+                System.out.println("Successfully connected to MongoDB database: " + database.getName());
+            }
+            consecutiveFailures.set(0);
+            close("health probe answered in " + lastProbeMillis + " ms");
+        } catch (Exception e) {
+            lastProbeMillis = -1;
+            open("health probe failed: " + e.getMessage());
+        }
+    }
+
+    // --- Transitions ---
+
+    private synchronized void open(String reason) {
+        if (state == State.OPEN) return;
+        state = State.OPEN;
+        openings.increment();
+        System.err.println("MongoDB unavailable, failing database calls fast (" + reason + ")");
+    }
+
+    private synchronized void close(String reason) {
+        consecutiveFailures.set(0);
+        if (state == State.CLOSED) return;
+        state = State.CLOSED;
+        System.out.println("MongoDB available again (" + reason + ")");
+    }
+
+    private static boolean isConnectivityFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof DatabaseUnavailableException) return false; // Our own rejection, not new evidence
+            if (t instanceof MongoTimeoutException || t instanceof MongoSocketException
+                    || t instanceof MongoNotPrimaryException) return true;
+        }
+        return false;
+    }
+
+    public interface MongoHealthMXBean {
+        String getState();
+        long getOpenings();
+        long getRejectedCalls();
+        int getConsecutiveFailures();
+        long getLastProbeMillis(); // -1 if the last probe failed
+    }
+
+    private final class Metrics implements MongoHealthMXBean {
+        @Override public String getState() { return state.name(); }
+        @Override public long getOpenings() { return openings.sum(); }
+        @Override public long getRejectedCalls() { return rejectedCalls.sum(); }
+        @Override public int getConsecutiveFailures() { return consecutiveFailures.get(); }
+        @Override public long getLastProbeMillis() { return lastProbeMillis; }
+    }
+}
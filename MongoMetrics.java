@@ -0,0 +1,254 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+// Driver instrumentation for the client MongoConnector builds: per-command latency histograms (server round
+// trip, from the CommandListener) next to pool checkout waits and in-use/waiting counts (from the
+// ConnectionPoolListener). A slow booking with fast commands but long checkout waits means pool starvation;
+// slow commands with no waiting means the server. Exported over JMX as movieticketbookingsystem:type=MongoClient.
+// Commands slower than -Dmongo.slowCommandMs (default 500) and checkouts slower than -Dmongo.slowCheckoutMs
+// (default 100) are also logged as they happen.
+public class MongoMetrics implements ConnectionPoolListener, CommandListener {
+
+    private static final long SLOW_COMMAND_MS = Long.getLong("mongo.slowCommandMs", 500);
+    private static final long SLOW_CHECKOUT_MS = Long.getLong("mongo.slowCheckoutMs", 100);
+
+    private static volatile MongoMetrics instance;
+
+    private final Map<String, LatencyHistogram> commandLatencies = new ConcurrentHashMap<>();
+    private final LatencyHistogram allCommands = new LatencyHistogram();
+    private final LatencyHistogram checkoutWaits = new LatencyHistogram();
+    private final LongAdder checkoutTimeouts = new LongAdder();
+    private final LongAdder checkoutFailures = new LongAdder(); // Any reason, timeouts included
+    private final AtomicInteger connectionsInUse = new AtomicInteger();
+    private final LongAccumulator peakConnectionsInUse = new LongAccumulator(Math::max, 0);
+    private final AtomicInteger waitingCheckouts = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile int maxPoolSize;
+    private final Metrics metrics = new Metrics();
+
+    private MongoMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("movieticketbookingsystem:type=MongoClient"));
+        } catch (Exception e) {
+            System.err.println("Could not register MongoDB client metrics: " + e.getMessage());
+        }
+    }
+
+    public static MongoMetrics getInstance() {
+        MongoMetrics local = instance;
+        if (local == null) {
+            synchronized (MongoMetrics.class) {
+                local = instance;
+                if (local == null) {
+                    local = new MongoMetrics();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public MongoMetricsMXBean getMetrics() {
+        return metrics;
+    }
+
+    // The configured limit, for "in use x/max" reporting
+    void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    // --- CommandListener ---
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        recordCommand(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), false);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        recordCommand(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+    }
+
+    private void recordCommand(String commandName, long elapsedNanos, boolean failed) {
+        LatencyHistogram histogram = commandLatencies.computeIfAbsent(commandName, name -> new LatencyHistogram());
+        histogram.record(elapsedNanos, failed);
+        allCommands.record(elapsedNanos, failed);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMillis >= SLOW_COMMAND_MS) {
+            System.err.println("Slow MongoDB command: " + commandName + " took " + elapsedMillis + " ms"
+                    + (failed ? " and failed" : "") + " (connections in use " + connectionsInUse.get() + "/" + maxPoolSize + ")");
+        }
+    }
+
+    // --- ConnectionPoolListener ---
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waitingCheckouts.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waitingCheckouts.decrementAndGet();
+        peakConnectionsInUse.accumulate(connectionsInUse.incrementAndGet());
+        long waitNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        checkoutWaits.record(waitNanos, false);
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        if (waitMillis >= SLOW_CHECKOUT_MS) {
+            System.err.println("Waited " + waitMillis + " ms for a pooled MongoDB connection (in use "
+                    + connectionsInUse.get() + "/" + maxPoolSize + ", " + waitingCheckouts.get() + " still waiting)");
+        }
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waitingCheckouts.decrementAndGet();
+        checkoutFailures.increment();
+        checkoutWaits.record(event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+        if (event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT) {
+            checkoutTimeouts.increment();
+            System.err.println("Timed out waiting for a pooled MongoDB connection after "
+                    + event.getElapsedTime(TimeUnit.MILLISECONDS) + " ms (pool exhausted: " + connectionsInUse.get() + "/" + maxPoolSize + " in use)");
+        }
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        connectionsInUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        openConnections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        openConnections.decrementAndGet();
+    }
+
+    // Fixed millisecond buckets (upper bounds); percentiles report the bucket's bound, good enough to tell
+    // 2 ms from 200 ms without keeping samples
+    private static final class LatencyHistogram {
+        private static final long[] BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_MS.length + 1]; // Last one: above 10 s
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long elapsedNanos, boolean failed) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            int bucket = 0;
+            while (bucket < BOUNDS_MS.length && millis >= BOUNDS_MS[bucket]) bucket++;
+            buckets[bucket].increment();
+            count.increment();
+            if (failed) failures.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+        }
+
+        // Upper bound (ms) of the bucket holding the given percentile; -1 with no samples, MAX_VALUE above 10 s
+        long percentileMillis(double percentile) {
+            long total = count.sum();
+            if (total == 0) return -1;
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return BOUNDS_MS[i];
+            }
+            return Long.MAX_VALUE;
+        }
+
+        double meanMillis() {
+            long total = count.sum();
+            return (total == 0) ? 0 : totalNanos.sum() / 1e6 / total;
+        }
+
+        long maxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        String summary() {
+            return "count=" + count.sum() + " failed=" + failures.sum()
+                    + String.format(" mean=%.1fms", meanMillis())
+                    + " p50<=" + bound(percentileMillis(50)) + " p95<=" + bound(percentileMillis(95))
+                    + " p99<=" + bound(percentileMillis(99)) + " max=" + maxMillis() + "ms";
+        }
+
+        private static String bound(long millis) {
+            return (millis == Long.MAX_VALUE) ? ">10000ms" : millis + "ms";
+        }
+    }
+
+    public interface MongoMetricsMXBean {
+        long getCommands();
+        long getFailedCommands();
+        long getCommandP95Millis();
+        long getCommandMaxMillis();
+        String[] getCommandLatencies(); // One line per command name
+        int getConnectionsInUse();
+        long getPeakConnectionsInUse();
+        int getOpenConnections();
+        int getMaxPoolSize();
+        int getWaitingCheckouts();
+        long getCheckoutWaitP95Millis();
+        long getCheckoutWaitMaxMillis();
+        String getCheckoutWaits();
+        long getCheckoutTimeouts();
+        long getCheckoutFailures();
+    }
+
+    private final class Metrics implements MongoMetricsMXBean {
+        @Override public long getCommands() { return allCommands.count.sum(); }
+        @Override public long getFailedCommands() { return allCommands.failures.sum(); }
+        @Override public long getCommandP95Millis() { return allCommands.percentileMillis(95); }
+        @Override public long getCommandMaxMillis() { return allCommands.maxMillis(); }
+        @Override public int getConnectionsInUse() { return connectionsInUse.get(); }
+        @Override public long getPeakConnectionsInUse() { return peakConnectionsInUse.get(); }
+        @Override public int getOpenConnections() { return openConnections.get(); }
+        @Override public int getMaxPoolSize() { return maxPoolSize; }
+        @Override public int getWaitingCheckouts() { return waitingCheckouts.get(); }
+        @Override public long getCheckoutWaitP95Millis() { return checkoutWaits.percentileMillis(95); }
+        @Override public long getCheckoutWaitMaxMillis() { return checkoutWaits.maxMillis(); }
+        @Override public String getCheckoutWaits() { return checkoutWaits.summary(); }
+        @Override public long getCheckoutTimeouts() { return checkoutTimeouts.sum(); }
+        @Override public long getCheckoutFailures() { return checkoutFailures.sum(); }
+
+        @Override
+        public String[] getCommandLatencies() {
+            List<String> lines = new ArrayList<>();
+            new TreeMap<>(commandLatencies).forEach((name, histogram) -> lines.add(name + ": " + histogram.summary()));
+            return lines.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import movieticketbookingsystem.Movie;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// MovieDAO on the 'movies' collection, read through CatalogCache
+public class MongoMovieDAO implements MovieDAO {
+
+    private final MongoCollection<Document> moviesCollection;
+
+    MongoMovieDAO() {
+        MongoDatabase database = MongoConnector.getDatabase();
+        this.moviesCollection = database.getCollection("movies");
+    }
+
+    // Run once per process by SchemaBootstrap
+    @Override
+    public void ensureSchema() {
+        try {
+             moviesCollection.createIndex(Indexes.ascending("movie_id"), new IndexOptions().unique(true)); // Point and $in lookups
+        } catch (Exception e) {
+             System.err.println("Index creation for movies might have failed: " + e.getMessage());
+        }
+        // Insert sample data if collection is empty
+         if (moviesCollection.countDocuments() == 0) {
+            insertSampleMovie(1, "The Matrix", "A computer hacker learns...", "Cineplex A");
+            insertSampleMovie(2, "Inception", "A thief who enters dreams...", "Cineplex B");
+            insertSampleMovie(3, "Interstellar", "Explorers travel through space...", "IMAX Theatre");
+         }
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        List<Movie> movies = new ArrayList<>();
+        try (MongoCursor<Document> cursor = moviesCollection.find().sort(Sorts.ascending("title")).iterator()) {
+            while (cursor.hasNext()) {
+                movies.add(mapDocumentToMovie(cursor.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching all movies: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return movies;
+    }
+
+    // Served from the shared catalog cache; the database is only read on a miss
+    @Override
+    public Optional<Movie> getMovieByIntId(int movieId) {
+        return CatalogCache.getInstance().getMovie(movieId, () -> loadMovieByIntId(movieId));
+    }
+
+    private Optional<Movie> loadMovieByIntId(int movieId) {
+         try {
+            Document movieDoc = moviesCollection.find(Filters.eq("movie_id", movieId)).first();
+            if (movieDoc != null) {
+                return Optional.of(mapDocumentToMovie(movieDoc));
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching movie by int ID " + movieId + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    // Movies for a set of ids in one $in query (ids already cached are not fetched); missing ids are absent from the map
+    @Override
+    public Map<Integer, Movie> getMoviesByIntIds(Collection<Integer> movieIds) {
+        Map<Integer, Movie> movies = new HashMap<>();
+        CatalogCache cache = CatalogCache.getInstance();
+        Set<Integer> toFetch = new HashSet<>();
+        for (Integer movieId : movieIds) {
+            Optional<Movie> cached = cache.peekMovie(movieId);
+            if (cached.isPresent()) movies.put(movieId, cached.get());
+            else toFetch.add(movieId);
+        }
+        if (toFetch.isEmpty()) return movies;
+        try (MongoCursor<Document> cursor = moviesCollection.find(Filters.in("movie_id", toFetch)).iterator()) {
+            while (cursor.hasNext()) {
+                Movie movie = mapDocumentToMovie(cursor.next());
+                movies.put(movie.getMovieId(), movie);
+                cache.putMovie(movie);
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching movies by int IDs " + toFetch + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return movies;
+    }
+
+     @Override
+     public Optional<Movie> getMovieByObjectId(String idString) {
+         try {
+             ObjectId objectId = new ObjectId(idString);
+             Document movieDoc = moviesCollection.find(Filters.eq("_id", objectId)).first();
+             if (movieDoc != null) {
+                 return Optional.of(mapDocumentToMovie(movieDoc));
+             }
+         } catch (IllegalArgumentException e) {
+              System.err.println("Invalid ObjectId format: " + idString);
+         } catch (Exception e) {
+             System.err.println("Error fetching movie by ObjectId " + idString + ": " + e.getMessage());
+             e.printStackTrace();
+         }
+         return Optional.empty();
+     }
+
+    private Movie mapDocumentToMovie(Document doc) {
+        ObjectId objectId = doc.getObjectId("_id");
+        return new Movie(
+                objectId != null ? objectId.toHexString() : null,
+                doc.getInteger("movie_id", -1),
+                doc.getString("title"),
+                doc.getString("description"),
+                doc.getString("theatre")
+        );
+    }
+
+    private void insertSampleMovie(int movieId, String title, String description, String theatre) {
+         if (moviesCollection.countDocuments(Filters.eq("movie_id", movieId)) == 0) {
+              Document newMovie = new Document("movie_id", movieId)
+                                     .append("title", title)
+                                     .append("description", description)
+                                     .append("theatre", theatre);
+              try {
+                  moviesCollection.insertOne(newMovie);
+                  CatalogCache.getInstance().invalidateMovie(movieId);
+                  System.out.println("Inserted sample movie: " + title);
+              } catch (Exception e) {
+                  System.err.println("Failed to insert sample movie " + title + ": " + e.getMessage());
+              }
+         }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,542 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.client.ClientSession; // Import ClientSession
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import movieticketbookingsystem.SeatId;
+import movieticketbookingsystem.SeatLayout;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.IndexOptions; // Import IndexOptions
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// SeatDAO on 'seat_maps': one document per showtime holding packed state bitsets, plus one 'holds' entry per
+// live hold (_id, words, masks, expires_at) so only the hold's owner can convert or release its held bits.
+// Expiry is normally driven by the owning kiosk's SeatHoldService; expires_at covers kiosks that stop without
+// releasing: expired holds are ignored when reading, swept when they block a hold or claim, and cleared at startup.
+// The legacy 'seats' collection (one document per seat) is only read for migration.
+public class MongoSeatDAO implements SeatDAO {
+
+    // Another kiosk's clock may run ahead of the owner's; a hold only counts as expired this long after expires_at
+    private static final long HOLD_EXPIRY_GRACE_MS = 5000;
+
+    private final MongoCollection<Document> seatsCollection; // Legacy per-seat documents
+    private final MongoCollection<Document> seatMapsCollection;
+    private static final Map<Integer, SeatBitmap> LAYOUT_CACHE = new ConcurrentHashMap<>(); // Shared by all instances
+
+    MongoSeatDAO() {
+        MongoDatabase database = MongoConnector.getDatabase();
+        this.seatsCollection = database.getCollection("seats");
+        this.seatMapsCollection = database.getCollection("seat_maps");
+    }
+
+    // Run once per process by SchemaBootstrap: unique index (one seat map per showtime), then clears holds left
+    // behind by kiosks that stopped (the in-memory inventory drops persisted holds itself when it loads)
+    @Override
+    public void ensureSchema() {
+         try {
+             seatMapsCollection.createIndex(Indexes.ascending("showtime_id"), new IndexOptions().unique(true));
+        } catch (Exception e) {
+             System.err.println("Index creation for seat_maps might have failed: " + e.getMessage());
+        }
+        if (!SeatInventory.isEnabled()) sweepExpiredHolds();
+    }
+
+    // Single-document read of the packed seat map; migrates legacy per-seat data on first access
+    @Override
+    public SeatBitmap getSeatMap(int showtimeId) {
+        try {
+            Document mapDoc = seatMapsCollection.find(Filters.eq("showtime_id", showtimeId)).first();
+            if (mapDoc != null) {
+                return mapDocumentToSeatMap(mapDoc);
+            }
+            return migrateShowtimeFromLegacy(showtimeId);
+        } catch (Exception e) {
+            System.err.println("Error fetching seat map for showtime " + showtimeId + ": " + e.getMessage());
+            e.printStackTrace(); // Log stack trace for debugging
+        }
+        return null;
+    }
+
+     @Override
+     public boolean initializeSeatsForShowtime(int showtimeId, int totalSeats, int cols) {
+         int maxSeats = Math.max(0, Math.min(totalSeats, SeatLayout.maxSeats(cols)));
+         SeatBitmap emptyMap = SeatBitmap.empty(showtimeId, maxSeats, cols);
+         Runnable reset = () -> seatMapsCollection.replaceOne(Filters.eq("showtime_id", showtimeId),
+                 seatMapToDocument(emptyMap), new ReplaceOptions().upsert(true));
+         try {
+             if (SeatInventory.isEnabled()) {
+                 SeatInventory.getInstance().invalidate(showtimeId, reset); // No write-behind flush may follow the reset
+             } else {
+                 reset.run();
+             }
+             System.out.println("Initialized seat map (" + maxSeats + " seats) for showtime " + showtimeId);
+             LAYOUT_CACHE.remove(showtimeId);
+             return true;
+         } catch (Exception e) {
+             System.err.println("Error initializing seat map for showtime " + showtimeId + ": " + e.getMessage());
+             return false;
+         }
+     }
+
+    // Must be called within a ClientSession transaction
+    public boolean updateSeatStatusBulk(ClientSession session, int showtimeId, int[] seatIds, String newStatus) {
+        return updateSeatStatusBulk(session, showtimeId, seatIds, null, newStatus).isSuccess();
+    }
+
+    // Conditional claim: the update only matches if every seat is currently in expectedStatus (null = unconditional),
+    // so availability check and write are one round trip. On conflict the losing seats are reported.
+    // Must be called within a ClientSession transaction
+    public SeatClaimResult updateSeatStatusBulk(ClientSession session, int showtimeId, int[] seatIds,
+                                                String expectedStatus, String newStatus) {
+        if (seatIds == null || seatIds.length == 0) return SeatClaimResult.success();
+
+        SeatBitmap layout = getLayout(session, showtimeId);
+        if (layout == null) return SeatClaimResult.failed();
+        int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, layout.getCols(), layout.getTotalSeats());
+        if (seatIndexes == null) {
+            System.err.println("Invalid seat in " + SeatId.format(seatIds) + " for showtime " + showtimeId);
+            return SeatClaimResult.failed();
+        }
+
+        // One atomic $bit update touching only the affected words; an available seat must not be held either
+        // (bookings that convert their own holds go through claimSeats)
+        boolean setBooked = SeatBitmap.STATUS_BOOKED.equals(newStatus);
+        List<Bson> clauses = new ArrayList<>();
+        List<Bson> bitOps = new ArrayList<>();
+        clauses.add(Filters.eq("showtime_id", showtimeId));
+        for (Map.Entry<Integer, Long> entry : SeatBitmap.masksByWord(seatIndexes).entrySet()) {
+            String field = "booked." + entry.getKey();
+            if (SeatBitmap.STATUS_AVAILABLE.equals(expectedStatus)) {
+                clauses.add(bitsAllClear(field, entry.getValue()));
+                clauses.add(bitsAllClear("held." + entry.getKey(), entry.getValue()));
+            }
+            if (SeatBitmap.STATUS_BOOKED.equals(expectedStatus)) clauses.add(bitsAllSet(field, entry.getValue()));
+            bitOps.add(setBooked ? Updates.bitwiseOr(field, entry.getValue()) : Updates.bitwiseAnd(field, ~entry.getValue()));
+        }
+
+        try {
+            UpdateResult result = seatMapsCollection.updateOne(session, Filters.and(clauses), Updates.combine(bitOps));
+            System.out.println("Seat status update ["+newStatus+"] result: Matched=" + result.getMatchedCount() + ", Modified=" + result.getModifiedCount());
+            if (result.wasAcknowledged() && result.getMatchedCount() == 1) {
+                return SeatClaimResult.success();
+            }
+            // Lost the race (or status already changed): read once to name the seats that conflicted
+            return SeatClaimResult.conflict(findConflictingSeats(session, showtimeId, seatIds, seatIndexes, expectedStatus, new ArrayList<>()));
+        } catch (Exception e) {
+             System.err.println("Error updating seat status: " + e.getMessage());
+              throw new RuntimeException("Failed to update seat status", e);
+        }
+    }
+
+    // The server only takes a numeric $bitsAllClear/$bitsAllSet mask that fits a non-negative int32, so a word mask
+    // (any of 64 bits) goes as its list of bit positions instead of Filters.bitsAllClear(field, long)
+    static Bson bitsAllClear(String field, long mask) {
+        return new Document(field, new Document("$bitsAllClear", SeatBitmap.bitPositions(mask)));
+    }
+
+    static Bson bitsAllSet(String field, long mask) {
+        return new Document(field, new Document("$bitsAllSet", SeatBitmap.bitPositions(mask)));
+    }
+
+    // Books the seats, converting the caller's own holds among them: a seat must be unbooked, and unheld unless
+    // one of ownHolds (still recorded in the seat map) holds it. A hold that lapsed is no longer the caller's, so
+    // its seats count as held by whoever has them now. Must be called within a ClientSession transaction
+    public SeatClaimResult claimSeats(ClientSession session, int showtimeId, int[] seatIds,
+                                      Collection<SeatHoldService.SeatHold> ownHolds) {
+        if (seatIds == null || seatIds.length == 0) return SeatClaimResult.success();
+
+        SeatBitmap layout = getLayout(session, showtimeId);
+        if (layout == null) return SeatClaimResult.failed();
+        int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, layout.getCols(), layout.getTotalSeats());
+        if (seatIndexes == null) {
+            System.err.println("Invalid seat in " + SeatId.format(seatIds) + " for showtime " + showtimeId);
+            return SeatClaimResult.failed();
+        }
+        Map<Integer, Long> masks = SeatBitmap.masksByWord(seatIndexes);
+        List<SeatHoldService.SeatHold> holds = SeatHoldService.coveredHolds(ownHolds, showtimeId, masks);
+
+        try {
+            if (tryClaim(session, showtimeId, masks, holds)) return SeatClaimResult.success();
+            // A seat may only be blocked by the expired hold of a kiosk that stopped: sweep those and try once more
+            if (sweepExpiredHolds(session, showtimeId) && tryClaim(session, showtimeId, masks, holds)) {
+                return SeatClaimResult.success();
+            }
+            // Lost the race, or one of our holds has ended: read once to name the seats that conflicted
+            return SeatClaimResult.conflict(findConflictingSeats(session, showtimeId, seatIds, seatIndexes,
+                    SeatBitmap.STATUS_AVAILABLE, holds));
+        } catch (Exception e) {
+            System.err.println("Error claiming seats: " + e.getMessage());
+            throw new RuntimeException("Failed to claim seats", e);
+        }
+    }
+
+    // One conditional update: books the seats, clears only our own held bits and drops our hold entries
+    private boolean tryClaim(ClientSession session, int showtimeId, Map<Integer, Long> masks,
+                             List<SeatHoldService.SeatHold> holds) {
+        Map<Integer, Long> ownMasks = SeatHoldService.combinedMasks(holds);
+        List<Bson> clauses = new ArrayList<>();
+        List<Bson> updates = new ArrayList<>();
+        clauses.add(Filters.eq("showtime_id", showtimeId));
+        for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+            int word = entry.getKey();
+            long mask = entry.getValue();
+            long own = ownMasks.getOrDefault(word, 0L) & mask;
+            clauses.add(bitsAllClear("booked." + word, mask));
+            if ((mask & ~own) != 0) clauses.add(bitsAllClear("held." + word, mask & ~own));
+            updates.add(Updates.bitwiseOr("booked." + word, mask));
+            if (own != 0) updates.add(Updates.bitwiseAnd("held." + word, ~own));
+        }
+        if (!holds.isEmpty()) {
+            List<ObjectId> holdIds = new ArrayList<>();
+            for (SeatHoldService.SeatHold hold : holds) holdIds.add(new ObjectId(hold.getHoldId()));
+            clauses.add(Filters.all("holds._id", holdIds)); // Every hold still ours
+            updates.add(Updates.pull("holds", Filters.in("_id", holdIds)));
+        }
+        UpdateResult result = seatMapsCollection.updateOne(session, Filters.and(clauses), Updates.combine(updates));
+        return result.wasAcknowledged() && result.getMatchedCount() == 1;
+    }
+
+    // Seats not in the expected status; for a claim, a held seat conflicts unless one of ownHolds still holds it
+    private int[] findConflictingSeats(ClientSession session, int showtimeId, int[] seatIds, int[] seatIndexes,
+                                       String expectedStatus, List<SeatHoldService.SeatHold> ownHolds) {
+        Document mapDoc = seatMapsCollection.find(session, Filters.eq("showtime_id", showtimeId)).first();
+        if (mapDoc == null) return seatIds.clone();
+        SeatBitmap current = mapDocumentToSeatMap(mapDoc);
+        boolean expectBooked = SeatBitmap.STATUS_BOOKED.equals(expectedStatus);
+        Set<String> recordedHolds = recordedHoldIds(mapDoc);
+        ownHolds.removeIf(hold -> !recordedHolds.contains(hold.getHoldId()));
+        Map<Integer, Long> ownMasks = SeatHoldService.combinedMasks(ownHolds);
+        int[] conflicts = new int[seatIds.length];
+        int count = 0;
+        for (int i = 0; i < seatIndexes.length; i++) {
+            int seatIndex = seatIndexes[i];
+            boolean heldByOthers = !expectBooked && current.isHeld(seatIndex)
+                    && (ownMasks.getOrDefault(SeatBitmap.wordIndex(seatIndex), 0L) & SeatBitmap.bitMask(seatIndex)) == 0;
+            if (current.isBooked(seatIndex) != expectBooked || heldByOthers) conflicts[count++] = seatIds[i];
+        }
+        return Arrays.copyOf(conflicts, count);
+    }
+
+     // Must be called within a ClientSession transaction
+     public boolean checkSeatsAvailability(ClientSession session, int showtimeId, int[] seatIds) {
+          if (seatIds == null || seatIds.length == 0) return true;
+          try {
+               SeatBitmap layout = getLayout(session, showtimeId);
+               if (layout == null) return false;
+               int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, layout.getCols(), layout.getTotalSeats());
+               if (seatIndexes == null) return false;
+               List<Bson> clauses = new ArrayList<>();
+               clauses.add(Filters.eq("showtime_id", showtimeId));
+               for (Map.Entry<Integer, Long> entry : SeatBitmap.masksByWord(seatIndexes).entrySet()) {
+                   clauses.add(bitsAllClear("booked." + entry.getKey(), entry.getValue()));
+               }
+               return seatMapsCollection.countDocuments(session, Filters.and(clauses)) == 1;
+          } catch (Exception e) {
+              System.err.println("Error checking seat availability: " + e.getMessage());
+              return false; // Assume unavailable on error
+          }
+     }
+
+    // --- Holds ---
+
+    // One conditional update: sets the held bits and records the hold's entry
+    @Override
+    public Map<Integer, Long> holdSeats(int showtimeId, int[] seatIds, String holdId, long expiresAtMillis) {
+        if (seatIds == null || seatIds.length == 0) return null;
+        try {
+            SeatBitmap layout = getLayout(null, showtimeId);
+            if (layout == null) return null;
+            int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, layout.getCols(), layout.getTotalSeats());
+            if (seatIndexes == null) return null;
+            Map<Integer, Long> masks = SeatBitmap.masksByWord(seatIndexes);
+
+            List<Bson> clauses = new ArrayList<>();
+            List<Bson> updates = new ArrayList<>();
+            List<Integer> words = new ArrayList<>();
+            List<Long> wordMasks = new ArrayList<>();
+            clauses.add(Filters.eq("showtime_id", showtimeId));
+            for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+                clauses.add(bitsAllClear("booked." + entry.getKey(), entry.getValue()));
+                clauses.add(bitsAllClear("held." + entry.getKey(), entry.getValue()));
+                updates.add(Updates.bitwiseOr("held." + entry.getKey(), entry.getValue()));
+                words.add(entry.getKey());
+                wordMasks.add(entry.getValue());
+            }
+            updates.add(Updates.push("holds", new Document("_id", new ObjectId(holdId))
+                    .append("words", words).append("masks", wordMasks).append("expires_at", new Date(expiresAtMillis))));
+            Bson filter = Filters.and(clauses);
+            Bson update = Updates.combine(updates);
+            if (seatMapsCollection.updateOne(filter, update).getModifiedCount() == 1) return masks;
+            // A seat may only be blocked by the expired hold of a kiosk that stopped: sweep those and try once more
+            boolean swept = sweepExpiredHolds(null, showtimeId);
+            return (swept && seatMapsCollection.updateOne(filter, update).getModifiedCount() == 1) ? masks : null;
+        } catch (Exception e) {
+            System.err.println("Error holding seats " + SeatId.format(seatIds) + " for showtime " + showtimeId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // One unordered bulk write; each update only matches while the hold's entry is still there
+    @Override
+    public void releaseHeldSeats(Collection<SeatHoldService.SeatHold> holds) {
+        if (holds.isEmpty()) return;
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (SeatHoldService.SeatHold hold : holds) {
+            ObjectId holdId = new ObjectId(hold.getHoldId());
+            List<Bson> ops = new ArrayList<>();
+            hold.getMasks().forEach((word, mask) -> ops.add(Updates.bitwiseAnd("held." + word, ~mask)));
+            ops.add(Updates.pull("holds", Filters.eq("_id", holdId)));
+            updates.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("showtime_id", hold.getShowtimeId()), Filters.eq("holds._id", holdId)),
+                    Updates.combine(ops)));
+        }
+        try {
+            seatMapsCollection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        } catch (Exception e) {
+            System.err.println("Error releasing held seats: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean writeSeatMap(SeatBitmap seatMap) {
+        try {
+            UpdateResult result = seatMapsCollection.updateOne(Filters.eq("showtime_id", seatMap.getShowtimeId()),
+                    Updates.combine(
+                            Updates.set("booked", SeatBitmap.toWordList(seatMap.getBookedWords())),
+                            Updates.set("held", SeatBitmap.toWordList(seatMap.getHeldWords()))));
+            return result.wasAcknowledged();
+        } catch (Exception e) {
+            System.err.println("Error writing seat map for showtime " + seatMap.getShowtimeId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- Expired holds ---
+
+    // Clears holds left behind by kiosks that stopped without releasing them: expired entries, and held bits no
+    // entry accounts for (from older versions or an in-memory inventory run). Live holds of running kiosks stay.
+    // Returns the number of seat maps changed.
+    public int sweepExpiredHolds() {
+        int swept = 0;
+        Bson withHolds = Filters.or(Filters.exists("holds.0"), Filters.elemMatch("held", new Document("$ne", 0L)));
+        try (MongoCursor<Document> cursor = seatMapsCollection.find(withHolds)
+                .projection(new Document("showtime_id", 1).append("total_seats", 1).append("held", 1).append("holds", 1))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                if (sweepExpiredHolds(null, cursor.next())) swept++;
+            }
+        } catch (Exception e) {
+            System.err.println("Error clearing expired seat holds: " + e.getMessage());
+        }
+        if (swept > 0) System.out.println("Cleared expired seat holds on " + swept + " showtimes");
+        return swept;
+    }
+
+    private boolean sweepExpiredHolds(ClientSession session, int showtimeId) {
+        Bson filter = Filters.eq("showtime_id", showtimeId);
+        Document mapDoc = ((session != null) ? seatMapsCollection.find(session, filter) : seatMapsCollection.find(filter))
+                .projection(new Document("showtime_id", 1).append("total_seats", 1).append("held", 1).append("holds", 1))
+                .first();
+        return mapDoc != null && sweepExpiredHolds(session, mapDoc);
+    }
+
+    // Drops the expired entries and recomputes the held bits from the live ones. Conditional on the entries read,
+    // so a concurrent hold, claim or release makes it a no-op. Returns true if the seat map changed.
+    private boolean sweepExpiredHolds(ClientSession session, Document mapDoc) {
+        int totalSeats = mapDoc.getInteger("total_seats", 0);
+        long[] held = SeatBitmap.fromWordList(mapDoc.getList("held", Number.class), totalSeats);
+        List<Document> holds = mapDoc.getList("holds", Document.class);
+        List<Document> liveHolds = new ArrayList<>();
+        long[] liveHeld = new long[held.length];
+        long now = System.currentTimeMillis();
+        if (holds != null) {
+            for (Document hold : holds) {
+                if (isExpired(hold, now)) continue;
+                liveHolds.add(hold);
+                addHoldMasks(hold, liveHeld);
+            }
+        }
+        if (Arrays.equals(held, liveHeld) && (holds == null || liveHolds.size() == holds.size())) return false;
+
+        Bson filter = Filters.and(Filters.eq("showtime_id", mapDoc.getInteger("showtime_id", -1)),
+                Filters.eq("total_seats", totalSeats),
+                (holds != null) ? Filters.eq("holds", holds) : Filters.exists("holds", false));
+        Bson update = Updates.combine(Updates.set("held", SeatBitmap.toWordList(liveHeld)), Updates.set("holds", liveHolds));
+        UpdateResult result = (session != null) ? seatMapsCollection.updateOne(session, filter, update)
+                : seatMapsCollection.updateOne(filter, update);
+        return result.getModifiedCount() == 1;
+    }
+
+    // Entries without expires_at predate it and have no owner that could still release them
+    private static boolean isExpired(Document hold, long nowMillis) {
+        Date expiresAt = hold.getDate("expires_at");
+        return expiresAt == null || expiresAt.getTime() + HOLD_EXPIRY_GRACE_MS < nowMillis;
+    }
+
+    private static void addHoldMasks(Document hold, long[] words) {
+        List<Integer> holdWords = hold.getList("words", Integer.class);
+        List<Long> holdMasks = hold.getList("masks", Long.class);
+        if (holdWords == null || holdMasks == null) return;
+        for (int i = 0; i < Math.min(holdWords.size(), holdMasks.size()); i++) {
+            if (holdWords.get(i) < words.length) words[holdWords.get(i)] |= holdMasks.get(i);
+        }
+    }
+
+    // --- Migration from the legacy 'seats' collection ---
+
+    // Converts every showtime still stored as per-seat documents; returns the number migrated
+    public int migrateLegacySeats() {
+        int migrated = 0;
+        try (MongoCursor<Integer> cursor = seatsCollection.distinct("showtime_id", Integer.class).iterator()) {
+            while (cursor.hasNext()) {
+                int showtimeId = cursor.next();
+                if (seatMapsCollection.countDocuments(Filters.eq("showtime_id", showtimeId)) == 0
+                        && migrateShowtimeFromLegacy(showtimeId) != null) {
+                    migrated++;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error migrating legacy seats: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println("Migrated " + migrated + " showtimes from 'seats' to 'seat_maps'");
+        return migrated;
+    }
+
+    // Builds the seat map from legacy documents (if any) and stores it; legacy documents are left in place
+    private SeatBitmap migrateShowtimeFromLegacy(int showtimeId) {
+        int cols = SeatLayout.COLS;
+        int[] bookedIndexes = new int[64];
+        int bookedCount = 0;
+        int totalSeats = 0;
+        try (MongoCursor<Document> cursor = seatsCollection.find(Filters.eq("showtime_id", showtimeId))
+                .projection(new Document("seat_number", 1).append("status", 1)).iterator()) {
+            while (cursor.hasNext()) {
+                Document seatDoc = cursor.next();
+                int index = SeatId.toIndex(SeatId.parse(seatDoc.getString("seat_number")), cols);
+                if (index < 0) continue;
+                totalSeats = Math.max(totalSeats, index + 1);
+                if (!SeatBitmap.STATUS_AVAILABLE.equals(seatDoc.getString("status"))) {
+                    if (bookedCount == bookedIndexes.length) bookedIndexes = Arrays.copyOf(bookedIndexes, bookedCount * 2);
+                    bookedIndexes[bookedCount++] = index;
+                }
+            }
+        }
+        if (totalSeats == 0) return null; // Nothing to migrate
+
+        long[] booked = new long[SeatBitmap.wordCount(totalSeats)];
+        for (Map.Entry<Integer, Long> entry : SeatBitmap.masksByWord(Arrays.copyOf(bookedIndexes, bookedCount)).entrySet()) {
+            booked[entry.getKey()] = entry.getValue();
+        }
+        SeatBitmap seatMap = new SeatBitmap(showtimeId, totalSeats, cols, booked, new long[booked.length]);
+        try {
+            // Insert-only upsert so a concurrent migration or booking is never overwritten
+            seatMapsCollection.updateOne(Filters.eq("showtime_id", showtimeId),
+                    new Document("$setOnInsert", seatMapToDocument(seatMap)), new UpdateOptions().upsert(true));
+            System.out.println("Migrated " + totalSeats + " legacy seats for showtime " + showtimeId);
+        } catch (Exception e) {
+            System.err.println("Failed to store migrated seat map for showtime " + showtimeId + ": " + e.getMessage());
+        }
+        Document stored = seatMapsCollection.find(Filters.eq("showtime_id", showtimeId)).first();
+        return (stored != null) ? mapDocumentToSeatMap(stored) : seatMap;
+    }
+
+    // --- Mapping ---
+
+    private static Set<String> recordedHoldIds(Document mapDoc) {
+        Set<String> holdIds = new HashSet<>();
+        List<Document> holds = mapDoc.getList("holds", Document.class);
+        if (holds != null) {
+            for (Document hold : holds) holdIds.add(hold.getObjectId("_id").toHexString());
+        }
+        return holdIds;
+    }
+
+    // Layout fields only (no bitset words), read inside the caller's session if one is given.
+    // Layouts only change when seats are re-initialized, so they are cached to keep claims to one round trip.
+    SeatBitmap getLayout(ClientSession session, int showtimeId) {
+        SeatBitmap cached = LAYOUT_CACHE.get(showtimeId);
+        if (cached != null) return cached;
+        Bson filter = Filters.eq("showtime_id", showtimeId);
+        Document layoutDoc = ((session != null) ? seatMapsCollection.find(session, filter) : seatMapsCollection.find(filter))
+                .projection(new Document("showtime_id", 1).append("total_seats", 1).append("cols", 1)).first();
+        if (layoutDoc == null) {
+            System.err.println("No seat map for showtime " + showtimeId);
+            return null;
+        }
+        SeatBitmap layout = mapDocumentToSeatMap(layoutDoc);
+        LAYOUT_CACHE.put(showtimeId, layout);
+        return layout;
+    }
+
+    // Seats of expired holds read as available, so a stopped kiosk blocks no one even before the next sweep.
+    // Held bits with no entry (the in-memory inventory writes those) are kept. Also used for change events.
+    static SeatBitmap mapDocumentToSeatMap(Document doc) {
+        int totalSeats = doc.getInteger("total_seats", 0);
+        long[] held = SeatBitmap.fromWordList(doc.getList("held", Number.class), totalSeats);
+        List<Document> holds = doc.getList("holds", Document.class);
+        if (holds != null && !holds.isEmpty()) {
+            long[] liveHeld = new long[held.length];
+            long[] expiredHeld = new long[held.length];
+            long now = System.currentTimeMillis();
+            for (Document hold : holds) addHoldMasks(hold, isExpired(hold, now) ? expiredHeld : liveHeld);
+            for (int i = 0; i < held.length; i++) held[i] &= ~(expiredHeld[i] & ~liveHeld[i]);
+        }
+        return new SeatBitmap(
+                doc.getInteger("showtime_id", -1),
+                totalSeats,
+                doc.getInteger("cols", SeatLayout.COLS),
+                SeatBitmap.fromWordList(doc.getList("booked", Number.class), totalSeats),
+                held
+        );
+    }
+
+    private Document seatMapToDocument(SeatBitmap seatMap) {
+        return new Document("showtime_id", seatMap.getShowtimeId())
+                .append("total_seats", seatMap.getTotalSeats())
+                .append("cols", seatMap.getCols())
+                .append("booked", SeatBitmap.toWordList(seatMap.getBookedWords()))
+                .append("held", SeatBitmap.toWordList(seatMap.getHeldWords()));
+    }
+
+    // Outcome of a conditional seat update; conflictingSeats holds the ids of seats not in the expected status
+    public static final class SeatClaimResult {
+        private static final int[] NO_SEATS = new int[0];
+
+        private final boolean success;
+        private final int[] conflictingSeats;
+
+        private SeatClaimResult(boolean success, int[] conflictingSeats) {
+            this.success = success;
+            this.conflictingSeats = conflictingSeats;
+        }
+
+        static SeatClaimResult success() { return new SeatClaimResult(true, NO_SEATS); }
+        static SeatClaimResult failed() { return new SeatClaimResult(false, NO_SEATS); }
+        static SeatClaimResult conflict(int[] conflictingSeats) { return new SeatClaimResult(false, conflictingSeats); }
+
+        public boolean isSuccess() { return success; }
+        public int[] getConflictingSeats() { return conflictingSeats; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import movieticketbookingsystem.SeatId;
+import movieticketbookingsystem.SeatLayout;
+import movieticketbookingsystem.Showtime;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime; // Added LocalTime
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// ShowtimeDAO on the 'showtimes' collection, with availability counters on each showtime document
+public class MongoShowtimeDAO implements ShowtimeDAO {
+
+    private final MongoCollection<Document> showtimesCollection;
+    private final MongoSeatDAO seatDAO; // Required for initialization
+    // Stored with the counters; bump when SeatLayout's prices change so startup recomputes them
+    private static final int PRICE_TIERS = 2;
+
+    // Shared instance comes from DaoRegistry; indexes and sample data are set up by SchemaBootstrap
+    MongoShowtimeDAO(MongoSeatDAO seatDAO) {
+        MongoDatabase database = MongoConnector.getDatabase();
+        this.showtimesCollection = database.getCollection("showtimes");
+        this.seatDAO = seatDAO;
+    }
+
+    // Indexes, sample data on an empty database, then counters for showtimes that predate them (or their tiers).
+    // Seeding writes seat maps, so SchemaBootstrap runs this after the seat_maps schema.
+    @Override
+    public void ensureSchema() {
+        try {
+             showtimesCollection.createIndexes(Arrays.asList(
+                     new IndexModel(Indexes.ascending("show_datetime")),
+                     new IndexModel(Indexes.ascending("movie_id")),
+                     new IndexModel(Indexes.ascending("showtime_id"), new IndexOptions().unique(true)))); // Point reads and booking history $lookup
+        } catch (Exception e) {
+             System.err.println("Index creation for showtimes might have failed: " + e.getMessage());
+        }
+        // Insert sample data if collection is empty
+        if (showtimesCollection.countDocuments() == 0) {
+             LocalDateTime today = LocalDate.now().atStartOfDay(); // Use LocalDate for clarity
+             LocalDateTime tomorrow = today.plusDays(1);
+             // Use LocalTime constants if defined elsewhere, or create them
+             LocalTime t1000 = LocalTime.of(10, 0);
+             LocalTime t1300 = LocalTime.of(13, 0);
+             LocalTime t1600 = LocalTime.of(16, 0);
+             LocalTime t1900 = LocalTime.of(19, 0);
+
+             // Arguments: showtimeId, movieId, dateTime, totalSeats
+             insertSampleShowtime(1, 1, today.with(t1300), 50); // Matrix Today 1 PM
+             insertSampleShowtime(2, 1, today.with(t1900), 50); // Matrix Today 7 PM
+             insertSampleShowtime(3, 2, today.with(t1000), 60); // Inception Today 10 AM
+             insertSampleShowtime(4, 2, tomorrow.with(t1300), 60);// Inception Tomorrow 1 PM
+             insertSampleShowtime(5, 3, tomorrow.with(t1900), 64);// Interstellar Tomorrow 7 PM
+        }
+        backfillAvailabilityCounters();
+    }
+
+    // One range query on the show_datetime index
+    @Override
+    public List<Showtime> getShowtimesBetween(LocalDateTime from, LocalDateTime to) {
+        List<Showtime> showtimes = new ArrayList<>();
+        Date startDate = Date.from(from.toInstant(ZoneOffset.UTC));
+        Date endDate = Date.from(to.toInstant(ZoneOffset.UTC));
+
+        Document query = new Document("show_datetime", new Document("$gte", startDate).append("$lt", endDate));
+
+        try (MongoCursor<Document> cursor = showtimesCollection.find(query).sort(Sorts.ascending("show_datetime")).iterator()) {
+            while (cursor.hasNext()) {
+                showtimes.add(mapDocumentToShowtime(cursor.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching showtimes from " + from + " to " + to + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return showtimes;
+    }
+
+     @Override
+     public Optional<Showtime> findShowtime(int movieId, LocalDateTime dateTime) {
+        Date exactDate = Date.from(dateTime.toInstant(ZoneOffset.UTC));
+        Document query = new Document("movie_id", movieId).append("show_datetime", exactDate);
+         try {
+            Document showtimeDoc = showtimesCollection.find(query).first();
+            if (showtimeDoc != null) {
+                return Optional.of(mapDocumentToShowtime(showtimeDoc));
+            }
+        } catch (Exception e) {
+            System.err.println("Error finding specific showtime for movie " + movieId + " at " + dateTime + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return Optional.empty();
+     }
+
+    // Served from the shared catalog cache; the database is only read on a miss
+    @Override
+    public Optional<Showtime> getShowtimeByIntId(int showtimeId) {
+        return CatalogCache.getInstance().getShowtime(showtimeId, () -> loadShowtimeByIntId(showtimeId));
+    }
+
+    private Optional<Showtime> loadShowtimeByIntId(int showtimeId) {
+         try {
+            Document showtimeDoc = showtimesCollection.find(Filters.eq("showtime_id", showtimeId)).first();
+            if (showtimeDoc != null) {
+                return Optional.of(mapDocumentToShowtime(showtimeDoc));
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching showtime by int ID " + showtimeId + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Showtime> getShowtimeByObjectId(String idString) {
+         try {
+             ObjectId objectId = new ObjectId(idString);
+             Document showtimeDoc = showtimesCollection.find(Filters.eq("_id", objectId)).first();
+             if (showtimeDoc != null) {
+                 return Optional.of(mapDocumentToShowtime(showtimeDoc));
+             }
+         } catch (IllegalArgumentException e) { System.err.println("Invalid ObjectId format: " + idString); }
+         catch (Exception e) { System.err.println("Error fetching showtime by ObjectId " + idString + ": " + e.getMessage()); e.printStackTrace(); }
+         return Optional.empty();
+     }
+
+    // showtime_id from SequenceService
+    @Override
+    public int createShowtime(int movieId, LocalDateTime showDateTime, int totalSeats) {
+        int showtimeId = SequenceService.getInstance().nextId(SequenceService.SHOWTIME_ID);
+        Document newShowtime = new Document("showtime_id", showtimeId)
+                                  .append("movie_id", movieId)
+                                  .append("show_datetime", Date.from(showDateTime.toInstant(ZoneOffset.UTC)))
+                                  .append("total_seats", totalSeats);
+        try {
+            showtimesCollection.insertOne(newShowtime);
+            CatalogCache.getInstance().invalidateShowtime(showtimeId);
+            ShowtimeSchedule.showtimeSaved(mapDocumentToShowtime(newShowtime));
+            if (!initializeSeatsForShowtime(showtimeId, totalSeats)) {
+                System.err.println("Showtime " + showtimeId + " created but seat initialization failed");
+            }
+            return showtimeId;
+        } catch (Exception e) {
+            System.err.println("Failed to create showtime for movie " + movieId + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // Calls SeatDAO to initialize seats, then resets the availability counters to a full house
+    @Override
+    public boolean initializeSeatsForShowtime(int showtimeId, int totalSeats) {
+        if (!seatDAO.initializeSeatsForShowtime(showtimeId, totalSeats)) return false;
+        int cols = SeatLayout.colsForCapacity(totalSeats);
+        return setAvailabilityCounters(showtimeId, SeatBitmap.empty(showtimeId, Math.min(totalSeats, SeatLayout.maxSeats(cols)), cols));
+    }
+
+    // --- Availability counters ---
+    // Each showtime document carries seats_available and available_by_price ({"<price>": seats left at that price}).
+    // The booking and cancellation transactions keep them in step with the seat map, so the selection screen
+    // can show a week of availability without reading any seat map.
+
+    // Moves the counters by 'direction' (-1 booked, +1 released) for the given seats.
+    // Must be called within the booking/cancellation transaction; errors propagate so the transaction aborts.
+    public void adjustAvailability(ClientSession session, int showtimeId, int[] seatIds, int direction) {
+        if (seatIds == null || seatIds.length == 0) return;
+        SeatBitmap layout = seatDAO.getLayout(session, showtimeId); // Cached; the claim has just read it
+        int rows = (layout != null) ? SeatLayout.rowCount(layout.getTotalSeats(), layout.getCols()) : SeatLayout.ROWS;
+        Map<Integer, Integer> seatsByPrice = new HashMap<>();
+        for (int seatId : seatIds) seatsByPrice.merge(SeatLayout.getRowPrice(SeatId.row(seatId), rows), 1, Integer::sum);
+        List<Bson> increments = new ArrayList<>();
+        increments.add(Updates.inc("seats_available", direction * seatIds.length));
+        seatsByPrice.forEach((price, count) -> increments.add(Updates.inc("available_by_price." + price, direction * count)));
+        // Showtimes without counters yet are skipped; the backfill computes theirs from the seat map
+        showtimesCollection.updateOne(session, Filters.and(Filters.eq("showtime_id", showtimeId), Filters.exists("seats_available")),
+                Updates.combine(increments));
+    }
+
+    // Computed from the counters in one aggregation
+    @Override
+    public List<ShowtimeAvailability> getAvailability(LocalDateTime from, LocalDateTime to) {
+        List<ShowtimeAvailability> availability = new ArrayList<>();
+        Document openTiers = new Document("$filter", new Document("input",
+                new Document("$objectToArray", new Document("$ifNull", Arrays.asList("$available_by_price", new Document()))))
+                .append("cond", new Document("$gt", Arrays.asList("$$this.v", 0))));
+        Document openPrices = new Document("$map", new Document("input", openTiers).append("in", new Document("$toInt", "$$this.k")));
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.and(Filters.gte("show_datetime", Date.from(from.toInstant(ZoneOffset.UTC))),
+                        Filters.lt("show_datetime", Date.from(to.toInstant(ZoneOffset.UTC))))),
+                Aggregates.project(new Document("_id", 0).append("showtime_id", 1).append("movie_id", 1)
+                        .append("show_datetime", 1).append("total_seats", 1).append("seats_available", 1)
+                        .append("min_price", new Document("$min", openPrices))
+                        .append("max_price", new Document("$max", openPrices))),
+                Aggregates.sort(Sorts.ascending("show_datetime")));
+        try (MongoCursor<Document> cursor = showtimesCollection.aggregate(pipeline).iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                Date showDate = doc.getDate("show_datetime");
+                availability.add(new ShowtimeAvailability(doc.getInteger("showtime_id", -1), doc.getInteger("movie_id", -1),
+                        (showDate != null) ? LocalDateTime.ofInstant(showDate.toInstant(), ZoneOffset.UTC) : null,
+                        doc.getInteger("total_seats", 0), doc.getInteger("seats_available", -1),
+                        doc.getInteger("min_price", 0), doc.getInteger("max_price", 0)));
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching availability from " + from + " to " + to + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return availability;
+    }
+
+    // Showtimes created before the counters existed, or counted under older price tiers, get them computed once
+    // from their seat map
+    private void backfillAvailabilityCounters() {
+        try (MongoCursor<Document> cursor = showtimesCollection.find(Filters.ne("price_tiers", PRICE_TIERS))
+                .projection(new Document("showtime_id", 1)).iterator()) {
+            while (cursor.hasNext()) {
+                int showtimeId = cursor.next().getInteger("showtime_id", -1);
+                SeatBitmap seatMap = seatDAO.getSeatMap(showtimeId);
+                if (seatMap != null) setAvailabilityCounters(showtimeId, seatMap);
+            }
+        } catch (Exception e) {
+            System.err.println("Availability counter backfill failed: " + e.getMessage());
+        }
+    }
+
+    private boolean setAvailabilityCounters(int showtimeId, SeatBitmap seatMap) {
+        Document seatsByPrice = new Document();
+        int available = 0;
+        int rows = SeatLayout.rowCount(seatMap.getTotalSeats(), seatMap.getCols());
+        for (int i = 0; i < seatMap.getTotalSeats(); i++) {
+            if (seatMap.isBooked(i)) continue;
+            String price = String.valueOf(SeatLayout.getRowPrice(i / seatMap.getCols(), rows));
+            seatsByPrice.put(price, seatsByPrice.getInteger(price, 0) + 1);
+            available++;
+        }
+        try {
+            showtimesCollection.updateOne(Filters.eq("showtime_id", showtimeId),
+                    Updates.combine(Updates.set("seats_available", available), Updates.set("available_by_price", seatsByPrice),
+                            Updates.set("price_tiers", PRICE_TIERS)));
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to set availability counters for showtime " + showtimeId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    static Showtime mapDocumentToShowtime(Document doc) {
+        ObjectId objectId = doc.getObjectId("_id");
+        Date showDate = doc.getDate("show_datetime");
+        LocalDateTime showDateTime = (showDate != null) ? LocalDateTime.ofInstant(showDate.toInstant(), ZoneOffset.UTC) : null;
+
+        return new Showtime(
+                objectId != null ? objectId.toHexString() : null,
+                doc.getInteger("showtime_id", -1),
+                doc.getInteger("movie_id", -1),
+                showDateTime,
+                doc.getInteger("total_seats", 0)
+        );
+    }
+
+    private void insertSampleShowtime(int showtimeId, int movieId, LocalDateTime showDateTime, int totalSeats) {
+        if (showtimesCollection.countDocuments(Filters.eq("showtime_id", showtimeId)) == 0) {
+            Date bsonDate = Date.from(showDateTime.toInstant(ZoneOffset.UTC));
+            Document newShowtime = new Document("showtime_id", showtimeId)
+                                      .append("movie_id", movieId)
+                                      .append("show_datetime", bsonDate)
+                                      .append("total_seats", totalSeats);
+            try {
+                showtimesCollection.insertOne(newShowtime);
+                System.out.println("Inserted sample showtime ID: " + showtimeId);
+                // IMPORTANT: Initialize seats immediately
+                initializeSeatsForShowtime(showtimeId, totalSeats);
+            } catch (Exception e) {
+                 System.err.println("Failed to insert/initialize sample showtime ID " + showtimeId + ": " + e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
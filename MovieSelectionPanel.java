@@ -1,18 +1,25 @@
 package movieticketbookingsystem;
 
+import movieticketbookingsystem.db.DaoRegistry;
 import movieticketbookingsystem.db.MovieDAO; // Import DAOs
+import movieticketbookingsystem.db.SchemaBootstrap;
 import movieticketbookingsystem.db.ShowtimeDAO;
+import movieticketbookingsystem.db.ShowtimeSchedule;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Comparator; // Import Comparator
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -29,21 +36,32 @@ public class MovieSelectionPanel extends JPanel {
 
     // DAOs needed
     private MovieDAO movieDAO;
+    private ShowtimeSchedule schedule;
     private ShowtimeDAO showtimeDAO;
+    private Map<Integer, ShowtimeDAO.ShowtimeAvailability> availabilityByShowtime = Collections.emptyMap();
+    private PanelLoader availabilityLoader; // Schedule + availability grid, on each reset
+    private PanelLoader moviesLoader; // Movies of the selected slot
 
     // Formatters/Constants remain the same
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEE, MMM dd");
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("hh:mm a");
+    private static final NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    static { currencyFormatter.setMaximumFractionDigits(0); }
     private static final LocalTime[] TIME_SLOTS = {
             LocalTime.of(10, 0), LocalTime.of(13, 0), LocalTime.of(16, 0), LocalTime.of(19, 0)
     };
 
     public MovieSelectionPanel(MovieTicketBookingSystem mainApp) {
         this.mainApp = mainApp;
-        this.movieDAO = new MovieDAO(); // Instantiate DAOs
-        this.showtimeDAO = new ShowtimeDAO();
-        setupUI();
-        resetSelections(); // Initial population
+        this.movieDAO = DaoRegistry.getInstance().getMovieDAO(); // Shared DAOs
+        this.showtimeDAO = DaoRegistry.getInstance().getShowtimeDAO();
+        setupUI(); // No database access here: populated by resetSelections when the panel is shown
+        this.availabilityLoader = new PanelLoader("showtime availability", this, state -> timeComboBox.repaint());
+        this.moviesLoader = new PanelLoader("movies", this, state -> {
+            if (state == PanelLoader.State.LOADING) movieDetailsArea.setText("Loading movies...");
+            if (moviesLoader.isLoading()) selectSeatsButton.setEnabled(false);
+            if (state == PanelLoader.State.FAILED) movieDetailsArea.setText("Could not load movies. Change the date or time to retry.");
+        });
     }
 
     private void setupUI() {
@@ -51,7 +69,7 @@ public class MovieSelectionPanel extends JPanel {
         setLayout(new BorderLayout(10, 10)); setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         JPanel topPanel = new JPanel(new GridBagLayout()); GridBagConstraints gbc = new GridBagConstraints(); gbc.insets = new Insets(2, 5, 2, 5); gbc.anchor = GridBagConstraints.WEST;
         gbc.gridx = 0; gbc.gridy = 0; topPanel.add(new JLabel("Date:"), gbc); dateComboBox = new JComboBox<>(); LocalDate today = LocalDate.now(); for (int i = 0; i < 7; i++) { dateComboBox.addItem(today.plusDays(i)); } dateComboBox.setRenderer(new DefaultListCellRenderer() { @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) { super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus); if (value instanceof LocalDate) { setText(((LocalDate) value).format(DATE_FORMAT)); } return this; } }); gbc.gridx = 1; gbc.gridy = 0; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx=0.3; topPanel.add(dateComboBox, gbc);
-        gbc.gridx = 2; gbc.gridy = 0; gbc.fill = GridBagConstraints.NONE; gbc.weightx=0; topPanel.add(new JLabel("Time:"), gbc); timeComboBox = new JComboBox<>(TIME_SLOTS); timeComboBox.setRenderer(new DefaultListCellRenderer() { @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) { super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus); if (value instanceof LocalTime) { setText(((LocalTime) value).format(TIME_FORMAT)); } return this; } }); gbc.gridx = 3; gbc.gridy = 0; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx=0.3; topPanel.add(timeComboBox, gbc);
+        gbc.gridx = 2; gbc.gridy = 0; gbc.fill = GridBagConstraints.NONE; gbc.weightx=0; topPanel.add(new JLabel("Time:"), gbc); timeComboBox = new JComboBox<>(TIME_SLOTS); timeComboBox.setRenderer(new DefaultListCellRenderer() { @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) { super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus); if (value instanceof LocalTime) { setText(((LocalTime) value).format(TIME_FORMAT) + slotAvailabilityText((LocalTime) value)); } return this; } }); gbc.gridx = 3; gbc.gridy = 0; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx=0.3; topPanel.add(timeComboBox, gbc);
         gbc.gridx = 4; gbc.gridy = 0; gbc.fill = GridBagConstraints.NONE; gbc.weightx=0; topPanel.add(new JLabel("Movie:"), gbc); movieComboBox = new JComboBox<>(); gbc.gridx = 5; gbc.gridy = 0; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx=0.4; topPanel.add(movieComboBox, gbc);
         ActionListener filterListener = e -> filterAndDisplayMovies(); dateComboBox.addActionListener(filterListener); timeComboBox.addActionListener(filterListener); movieComboBox.addActionListener(e -> displaySelectedMovieDetails());
         movieDetailsArea = new JTextArea(8, 40); movieDetailsArea.setEditable(false); movieDetailsArea.setLineWrap(true); movieDetailsArea.setWrapStyleWord(true); movieDetailsArea.setFont(new Font("Arial", Font.PLAIN, 14)); JScrollPane scrollPane = new JScrollPane(movieDetailsArea);
@@ -67,31 +85,27 @@ public class MovieSelectionPanel extends JPanel {
     if (selectedDate == null || selectedTime == null) return;
 
     System.out.println("Filtering for Date: " + selectedDate + ", Time: " + selectedTime); // DEBUG
+    timeComboBox.repaint(); // Slot availability depends on the date
+    if (schedule == null) return; // Still loading; resetSelections filters when it arrives
 
-    // Get showtimes for the date using DAO
-    List<Showtime> showtimesOnDate = showtimeDAO.getShowtimesByDate(selectedDate);
-    System.out.println("Showtimes found for date " + selectedDate + ": " + showtimesOnDate.size()); // DEBUG
-
-    // Filter further by time and get distinct movie IDs
-    List<Integer> movieIds = showtimesOnDate.stream()
-            .filter(st -> {
-                // DEBUG: Check individual showtime match
-                boolean timeMatch = st.getShowDateTime().toLocalTime().equals(selectedTime);
-                // System.out.println(" Checking Showtime ID " + st.getShowtimeId() + " ("+st.getShowDateTime()+"): Time match? " + timeMatch);
-                return timeMatch;
-            })
+    // Showtimes in the selected slot from the in-memory schedule (no database call inside the week)
+    List<Showtime> showtimesInSlot = schedule.getShowtimesAt(LocalDateTime.of(selectedDate, selectedTime));
+    System.out.println("Showtimes found for " + selectedDate + " " + selectedTime + ": " + showtimesInSlot.size()); // DEBUG
+
+    // Get distinct movie IDs
+    List<Integer> movieIds = showtimesInSlot.stream()
             .map(Showtime::getMovieId)
             .distinct()
             .collect(Collectors.toList());
     System.out.println("Movie IDs found for specific time: " + movieIds); // DEBUG
 
-    // Get movie details for those IDs using DAO
-    List<Movie> availableMovies = movieIds.stream()
-            .map(id -> movieDAO.getMovieByIntId(id))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
+    // Get movie details for those IDs using DAO (one query for the whole set, usually served by the catalog cache)
+    moviesLoader.load(() -> movieDAO.getMoviesByIntIds(movieIds).values().stream()
             .sorted(Comparator.comparing(Movie::getTitle))
-            .collect(Collectors.toList());
+            .collect(Collectors.toList()), this::showMovies);
+    }
+
+    private void showMovies(List<Movie> availableMovies) {
             System.out.println("Available Movie objects found: " + availableMovies.size());
 
         // Update UI (same logic as before)
@@ -116,12 +130,14 @@ public class MovieSelectionPanel extends JPanel {
     private void displaySelectedMovieDetails() {
          Movie selectedMovie = (Movie) movieComboBox.getSelectedItem();
          if (selectedMovie != null) {
+             ShowtimeDAO.ShowtimeAvailability availability = selectedAvailability(selectedMovie);
              movieDetailsArea.setText(
                      "Title: " + selectedMovie.getTitle() + "\n\n" +
                      "Description: " + selectedMovie.getDescription() + "\n\n" +
-                     "Theatre: " + selectedMovie.getTheatre()
+                     "Theatre: " + selectedMovie.getTheatre() + "\n\n" +
+                     "Seats: " + movieAvailabilityText(availability)
              );
-             selectSeatsButton.setEnabled(true);
+             selectSeatsButton.setEnabled(availability == null || !availability.isSoldOut());
          } else {
              if (movieComboBox.getItemCount() == 0) {
                   movieDetailsArea.setText("No movies available for the selected date and time.");
@@ -144,11 +160,11 @@ public class MovieSelectionPanel extends JPanel {
         }
         LocalDateTime selectedDateTime = LocalDateTime.of(selectedDate, selectedTime);
 
-        // Find the Showtime using DAO
-        Optional<Showtime> showtimeOpt = showtimeDAO.findShowtime(selectedMovie.getMovieId(), selectedDateTime);
+        // Find the Showtime in the schedule
+        Optional<Showtime> showtimeOpt = schedule.findShowtime(selectedMovie.getMovieId(), selectedDateTime);
 
         if (showtimeOpt.isPresent()) {
-            mainApp.setSelectedShowtime(showtimeOpt.get()); // Pass the actual Showtime object
+            mainApp.setSelectedShowtime(showtimeOpt.get(), selectedMovie); // Pass the actual Showtime object
             mainApp.showPanel(MovieTicketBookingSystem.SEAT_SELECTION_PANEL);
         } else {
             JOptionPane.showMessageDialog(this, "Error: Could not find the selected showtime in the database.", "Internal Error", JOptionPane.ERROR_MESSAGE);
@@ -156,9 +172,63 @@ public class MovieSelectionPanel extends JPanel {
         }
     }
 
+    // --- Availability (one aggregation over the week's showtime counters) ---
+
+    // Background, after SchemaBootstrap: also makes sure the schedule is loaded
+    private Map<Integer, ShowtimeDAO.ShowtimeAvailability> loadAvailability() {
+        ShowtimeSchedule.getInstance();
+        LocalDate today = LocalDate.now();
+        Map<Integer, ShowtimeDAO.ShowtimeAvailability> byShowtime = new HashMap<>();
+        for (ShowtimeDAO.ShowtimeAvailability availability : showtimeDAO.getAvailability(today.atStartOfDay(), today.plusDays(7).atStartOfDay())) {
+            byShowtime.put(availability.getShowtimeId(), availability);
+        }
+        return byShowtime;
+    }
+
+    private ShowtimeDAO.ShowtimeAvailability selectedAvailability(Movie movie) {
+        LocalDate date = (LocalDate) dateComboBox.getSelectedItem();
+        LocalTime time = (LocalTime) timeComboBox.getSelectedItem();
+        if (date == null || time == null) return null;
+        return schedule.findShowtime(movie.getMovieId(), LocalDateTime.of(date, time))
+                .map(st -> availabilityByShowtime.get(st.getShowtimeId())).orElse(null);
+    }
+
+    private static String movieAvailabilityText(ShowtimeDAO.ShowtimeAvailability availability) {
+        if (availability == null || availability.getSeatsAvailable() < 0) return "Availability unknown";
+        if (availability.isSoldOut()) return "Sold out";
+        String prices = (availability.getMinPrice() == availability.getMaxPrice())
+                ? currencyFormatter.format(availability.getMinPrice())
+                : currencyFormatter.format(availability.getMinPrice()) + " - " + currencyFormatter.format(availability.getMaxPrice());
+        return availability.getSeatsAvailable() + " of " + availability.getTotalSeats() + " left (" + prices + ")";
+    }
+
+    // " (sold out)" when every showtime in the slot on the selected date is full, else the cheapest seat on sale
+    private String slotAvailabilityText(LocalTime slot) {
+        LocalDate date = (LocalDate) dateComboBox.getSelectedItem();
+        if (date == null || schedule == null) return "";
+        int cheapest = Integer.MAX_VALUE;
+        boolean anyKnown = false;
+        for (Showtime showtime : schedule.getShowtimesAt(LocalDateTime.of(date, slot))) {
+            ShowtimeDAO.ShowtimeAvailability availability = availabilityByShowtime.get(showtime.getShowtimeId());
+            if (availability == null || availability.getSeatsAvailable() < 0) return ""; // Unknown: don't claim sold out
+            anyKnown = true;
+            if (!availability.isSoldOut()) cheapest = Math.min(cheapest, availability.getMinPrice());
+        }
+        if (!anyKnown) return "";
+        return (cheapest == Integer.MAX_VALUE) ? " (sold out)" : " (from " + currencyFormatter.format(cheapest) + ")";
+    }
+
     public void resetSelections() {
          if (dateComboBox.getItemCount() > 0) dateComboBox.setSelectedIndex(0);
          if (timeComboBox.getItemCount() > 0) timeComboBox.setSelectedIndex(0);
-         filterAndDisplayMovies();
+         if (schedule == null) movieDetailsArea.setText("Loading showtimes...");
+         filterAndDisplayMovies(); // From the schedule already in memory, if any
+         availabilityLoader.loadAfter(SchemaBootstrap.start(), this::loadAvailability, availability -> {
+             boolean firstLoad = (schedule == null);
+             schedule = ShowtimeSchedule.getInstance(); // Loaded by the query above
+             availabilityByShowtime = availability;
+             if (firstLoad) filterAndDisplayMovies();
+             else displaySelectedMovieDetails(); // Refresh the seats line
+         });
     }
 }
\ No newline at end of file
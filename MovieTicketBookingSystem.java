@@ -1,16 +1,26 @@
 package movieticketbookingsystem;
 
+import movieticketbookingsystem.db.DaoRegistry;
 import movieticketbookingsystem.db.DatabaseConnector; // Keep this import if you used it before for testing
+import movieticketbookingsystem.db.DbExecutor;
 import movieticketbookingsystem.db.MongoConnector; // Import Mongo Connector
 import movieticketbookingsystem.db.MovieDAO; // May need this if fetching movie directly here
+import movieticketbookingsystem.db.SeatHoldService;
+import movieticketbookingsystem.db.SeatInventory;
+import movieticketbookingsystem.db.SchemaBootstrap;
+import movieticketbookingsystem.db.SeatMapSubscriptionService;
+import movieticketbookingsystem.db.ShowtimeSchedule;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional; // Import Optional
+import java.util.Set;
 
 public class MovieTicketBookingSystem extends JFrame {
 
@@ -25,16 +35,17 @@ public class MovieTicketBookingSystem extends JFrame {
     private JMenuBar menuBar; private JMenu userMenu; private JMenuItem myBookingsItem; private JMenuItem logoutItem;
 
     // BookingDetails inner class (same)
-    public static class BookingDetails { List<String> bookedSeats; Map<String, Integer> selectedSnacksWithQuantities; int seatCost; int snackCost; int totalCost; BookingDetails(List<String> bookedSeats, Map<String, Integer> selectedSnacksWithQuantities, int seatCost, int snackCost, int totalCost) { this.bookedSeats = bookedSeats; this.selectedSnacksWithQuantities = selectedSnacksWithQuantities; this.seatCost = seatCost; this.snackCost = snackCost; this.totalCost = totalCost; } }
+    public static class BookingDetails { int[] seatIds; Map<String, Integer> selectedSnacksWithQuantities; int seatCost; int snackCost; int totalCost; BookingDetails(int[] seatIds, Map<String, Integer> selectedSnacksWithQuantities, int seatCost, int snackCost, int totalCost) { this.seatIds = seatIds; this.selectedSnacksWithQuantities = selectedSnacksWithQuantities; this.seatCost = seatCost; this.snackCost = snackCost; this.totalCost = totalCost; } }
 
 
     public MovieTicketBookingSystem() {
+        SchemaBootstrap.start(); // Indexes and sample data, in the background
         // --- Constructor UI Setup (same) ---
         setTitle("Movie Ticket Booking System"); setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // Change close operation for shutdown hook
          setMinimumSize(new Dimension(800, 650)); setLocationRelativeTo(null);
          cardLayout = new CardLayout(); mainPanel = new JPanel(cardLayout);
-         loginPanel = new LoginPanel(this); movieSelectionPanel = new MovieSelectionPanel(this); seatSelectionPanel = new SeatSelectionPanel(this); confirmationPanel = new ConfirmationPanel(this); bookingHistoryPanel = new BookingHistoryPanel(this);
-         mainPanel.add(loginPanel, LOGIN_PANEL); mainPanel.add(movieSelectionPanel, MOVIE_SELECTION_PANEL); mainPanel.add(seatSelectionPanel, SEAT_SELECTION_PANEL); mainPanel.add(confirmationPanel, CONFIRMATION_PANEL); mainPanel.add(bookingHistoryPanel, BOOKING_HISTORY_PANEL);
+         loginPanel = new LoginPanel(this); // Other panels are built on first use (see ensurePanel)
+         mainPanel.add(loginPanel, LOGIN_PANEL);
          add(mainPanel); createMenuBar(); setJMenuBar(menuBar); menuBar.setVisible(false);
         // --- End UI Setup ---
 
@@ -43,6 +54,12 @@ public class MovieTicketBookingSystem extends JFrame {
             @Override
             public void windowClosing(WindowEvent e) {
                 System.out.println("Application shutting down...");
+                if (seatSelectionPanel != null) seatSelectionPanel.releaseHolds(); // Don't leave this kiosk's holds to lapse
+                DbExecutor.shutdown(); // Let bookings in flight finish
+                SeatHoldService.shutdown();
+                SeatMapSubscriptionService.shutdown();
+                ShowtimeSchedule.shutdown();
+                SeatInventory.shutdown(); // Flush pending seat writes before the client closes
                 MongoConnector.close(); // Close MongoDB client
                 dispose(); // Dispose the JFrame
                 System.exit(0); // Ensure application exits
@@ -51,12 +68,50 @@ public class MovieTicketBookingSystem extends JFrame {
 
         showPanel(LOGIN_PANEL);
         SwingUtilities.invokeLater(() -> { setVisible(true); });
+        warmUp();
+    }
+
+    // While the user types credentials: load the week's schedule and its movies into memory off the EDT, then build
+    // the movie selection screen so the first screen after login needs no database round trip
+    private void warmUp() {
+        SchemaBootstrap.start()
+                .thenCompose(v -> DbExecutor.getInstance().supplyAsync(() -> {
+                    ShowtimeSchedule schedule = ShowtimeSchedule.getInstance();
+                    Set<Integer> movieIds = new HashSet<>();
+                    LocalDate today = LocalDate.now();
+                    for (int day = 0; day < 7; day++) {
+                        for (Showtime showtime : schedule.getShowtimesOn(today.plusDays(day))) movieIds.add(showtime.getMovieId());
+                    }
+                    DaoRegistry.getInstance().getMovieDAO().getMoviesByIntIds(movieIds); // Fills the catalog cache
+                    return null;
+                }))
+                .whenComplete((v, e) -> {
+                    if (e != null) System.err.println("Startup warm-up failed: " + e.getMessage());
+                    SwingUtilities.invokeLater(() -> ensurePanel(MOVIE_SELECTION_PANEL));
+                });
+    }
+
+    // Builds a panel the first time it is needed
+    private void ensurePanel(String panelName) {
+        if (MOVIE_SELECTION_PANEL.equals(panelName) && movieSelectionPanel == null) {
+            movieSelectionPanel = new MovieSelectionPanel(this);
+            mainPanel.add(movieSelectionPanel, MOVIE_SELECTION_PANEL);
+        } else if (SEAT_SELECTION_PANEL.equals(panelName) && seatSelectionPanel == null) {
+            seatSelectionPanel = new SeatSelectionPanel(this);
+            mainPanel.add(seatSelectionPanel, SEAT_SELECTION_PANEL);
+        } else if (CONFIRMATION_PANEL.equals(panelName) && confirmationPanel == null) {
+            confirmationPanel = new ConfirmationPanel(this);
+            mainPanel.add(confirmationPanel, CONFIRMATION_PANEL);
+        } else if (BOOKING_HISTORY_PANEL.equals(panelName) && bookingHistoryPanel == null) {
+            bookingHistoryPanel = new BookingHistoryPanel(this);
+            mainPanel.add(bookingHistoryPanel, BOOKING_HISTORY_PANEL);
+        }
     }
 
     // createMenuBar, handleLogout, showPanel, clearBookingState (same logic)
     private void createMenuBar() { /* Same */ menuBar = new JMenuBar(); userMenu = new JMenu("User"); myBookingsItem = new JMenuItem("My Bookings"); logoutItem = new JMenuItem("Logout"); myBookingsItem.addActionListener(e -> showPanel(BOOKING_HISTORY_PANEL)); logoutItem.addActionListener(e -> handleLogout()); userMenu.add(myBookingsItem); userMenu.addSeparator(); userMenu.add(logoutItem); menuBar.add(userMenu); }
     private void handleLogout() { /* Same */ setLoggedInUser(-1, null); showPanel(LOGIN_PANEL); }
-    public void showPanel(String panelName) { /* Same logic as before, calls setupPanel/loadBookings appropriately */ if (SEAT_SELECTION_PANEL.equals(panelName) && selectedShowtime != null) { seatSelectionPanel.setupPanel(selectedShowtime); } else if (CONFIRMATION_PANEL.equals(panelName) && selectedMovie != null && bookingDetails != null) { confirmationPanel.showConfirmation(selectedMovie, bookingDetails); } else if (BOOKING_HISTORY_PANEL.equals(panelName) && loggedInUserId != -1) { bookingHistoryPanel.loadBookings(loggedInUserId); } else if (LOGIN_PANEL.equals(panelName)) { loginPanel.resetFields(); clearBookingState(); } else if (MOVIE_SELECTION_PANEL.equals(panelName)) { clearBookingState(); if(movieSelectionPanel!=null) movieSelectionPanel.resetSelections(); } menuBar.setVisible(loggedInUserId != -1 && !LOGIN_PANEL.equals(panelName)); cardLayout.show(mainPanel, panelName); mainPanel.revalidate(); mainPanel.repaint(); }
+    public void showPanel(String panelName) { /* Same logic as before, calls setupPanel/loadBookings appropriately */ ensurePanel(panelName); if (SEAT_SELECTION_PANEL.equals(panelName) && selectedShowtime != null) { seatSelectionPanel.setupPanel(selectedShowtime); } else if (CONFIRMATION_PANEL.equals(panelName) && selectedMovie != null && bookingDetails != null) { confirmationPanel.showConfirmation(selectedMovie, bookingDetails); } else if (BOOKING_HISTORY_PANEL.equals(panelName) && loggedInUserId != -1) { bookingHistoryPanel.loadBookings(loggedInUserId); } else if (LOGIN_PANEL.equals(panelName)) { loginPanel.resetFields(); clearBookingState(); } else if (MOVIE_SELECTION_PANEL.equals(panelName)) { clearBookingState(); if(movieSelectionPanel!=null) movieSelectionPanel.resetSelections(); } menuBar.setVisible(loggedInUserId != -1 && !LOGIN_PANEL.equals(panelName)); cardLayout.show(mainPanel, panelName); mainPanel.revalidate(); mainPanel.repaint(); }
     private void clearBookingState() { /* Same */ bookingDetails = null; selectedMovie = null; selectedShowtime = null; }
 
     // setLoggedInUser, getLoggedInUserId (same)
@@ -64,11 +119,17 @@ public class MovieTicketBookingSystem extends JFrame {
     public int getLoggedInUserId() { return loggedInUserId; }
 
     // setSelectedShowtime needs MovieDAO now potentially
+    // The caller already has the movie: no lookup
+    public void setSelectedShowtime(Showtime showtime, Movie movie) {
+        this.selectedShowtime = showtime;
+        this.selectedMovie = (showtime != null) ? movie : null;
+    }
+
     public void setSelectedShowtime(Showtime showtime) {
         this.selectedShowtime = showtime;
         if (showtime != null) {
             // Fetch movie details when showtime is selected
-            MovieDAO movieDAO = new MovieDAO(); // Instantiate DAO
+            MovieDAO movieDAO = DaoRegistry.getInstance().getMovieDAO(); // Shared DAO
             Optional<Movie> movieOpt = movieDAO.getMovieByIntId(showtime.getMovieId());
             this.selectedMovie = movieOpt.orElse(null); // Store movie object if found
         } else {
@@ -79,7 +140,7 @@ public class MovieTicketBookingSystem extends JFrame {
     public Movie getSelectedMovie() { return selectedMovie; } // Keep getter
 
     // setBookingDetails (same - just stores temp data)
-    public void setBookingDetails(List<String> seats, Map<String, Integer> snacks, int seatCost, int snackCost, int totalCost) {
+    public void setBookingDetails(int[] seats, Map<String, Integer> snacks, int seatCost, int snackCost, int totalCost) {
         this.bookingDetails = new BookingDetails(seats, snacks, seatCost, snackCost, totalCost);
     }
     public BookingDetails getBookingDetails() { return bookingDetails; }
@@ -0,0 +1,151 @@
+package movieticketbookingsystem;
+
+import movieticketbookingsystem.db.DbExecutor;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Runs one panel view's database reads as SwingWorkers on DbExecutor (so they share its concurrency cap) and
+// delivers results on the EDT. Starting a load cancels the one in flight, and a superseded load's result is
+// dropped even if it already finished, so quick navigation never paints old data over new. Loads are also
+// cancelled when the owning panel is hidden. All methods must be called on the EDT.
+public class PanelLoader {
+
+    // Written PanelLoader.State where a SwingWorker is in scope: there plain State means Future.State (JDK 19+)
+    public enum State {
+        IDLE,
+        LOADING,    // Nothing to show yet
+        REFRESHING, // Earlier data still on screen while the new load runs
+        LOADED,
+        FAILED      // Earlier data (if any) is stale
+    }
+
+    public interface StateListener {
+        void stateChanged(State state);
+    }
+
+    private final String name;
+    private final StateListener stateListener;
+    private SwingWorker<?, Void> current;
+    private long generation;
+    private boolean hasData;
+    private State state = State.IDLE;
+
+    public PanelLoader(String name, JComponent owner, StateListener stateListener) {
+        this.name = name;
+        this.stateListener = stateListener;
+        owner.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                cancel(); // User navigated away
+            }
+        });
+    }
+
+    public <T> void load(Callable<T> query, Consumer<T> onLoaded) {
+        load(query, onLoaded, null);
+    }
+
+    // onFailed (may be null) gets the query's exception after the state has moved to FAILED
+    public <T> void load(Callable<T> query, Consumer<T> onLoaded, Consumer<Throwable> onFailed) {
+        loadAfter(CompletableFuture.completedFuture(null), query, onLoaded, onFailed);
+    }
+
+    public <T> void loadAfter(CompletableFuture<?> prerequisite, Callable<T> query, Consumer<T> onLoaded) {
+        loadAfter(prerequisite, query, onLoaded, null);
+    }
+
+    // The query is only submitted once prerequisite has completed (successfully or not), so it never holds a
+    // DbExecutor slot while waiting on other DbExecutor work such as SchemaBootstrap
+    public <T> void loadAfter(CompletableFuture<?> prerequisite, Callable<T> query, Consumer<T> onLoaded,
+                              Consumer<Throwable> onFailed) {
+        cancelCurrent();
+        final long loadGeneration = ++generation;
+        SwingWorker<T, Void> worker = new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return query.call();
+            }
+
+            @Override
+            protected void done() {
+                if (loadGeneration != generation || isCancelled()) return; // Superseded or cancelled
+                current = null;
+                try {
+                    T result = get();
+                    hasData = true;
+                    setState(PanelLoader.State.LOADED);
+                    onLoaded.accept(result);
+                } catch (ExecutionException e) {
+                    failed((e.getCause() != null) ? e.getCause() : e, onFailed);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        current = worker;
+        setState(hasData ? PanelLoader.State.REFRESHING : PanelLoader.State.LOADING);
+        prerequisite.handle((v, e) -> null).thenCompose(v -> DbExecutor.getInstance().supplyAsync(() -> {
+            worker.run(); // No-op if cancelled while queued
+            return null;
+        })).whenComplete((v, error) -> {
+            // Rejected without running (e.g. the database circuit is open): done() will never be called
+            if (error == null) return;
+            Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+            SwingUtilities.invokeLater(() -> {
+                if (loadGeneration != generation || worker.isDone()) return;
+                current = null;
+                failed(cause, onFailed);
+            });
+        });
+    }
+
+    private void failed(Throwable cause, Consumer<Throwable> onFailed) {
+        System.err.println("Loading " + name + " failed: " + cause.getMessage());
+        setState(PanelLoader.State.FAILED);
+        if (onFailed != null) onFailed.accept(cause);
+    }
+
+    // Drops the load in flight (its result will never be delivered)
+    public void cancel() {
+        if (current == null) return;
+        cancelCurrent();
+        generation++;
+        setState(hasData ? PanelLoader.State.FAILED : PanelLoader.State.IDLE); // Whatever is on screen was not refreshed
+    }
+
+    // Next load starts from LOADING again (e.g. the panel now shows a different user or showtime)
+    public void reset() {
+        cancel();
+        hasData = false;
+        setState(PanelLoader.State.IDLE);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isLoading() {
+        return state == PanelLoader.State.LOADING || state == PanelLoader.State.REFRESHING;
+    }
+
+    private void cancelCurrent() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    private void setState(State newState) {
+        if (state == newState) return;
+        state = newState;
+        if (stateListener != null) stateListener.stateChanged(newState);
+    }
+}
@@ -0,0 +1,57 @@
+package movieticketbookingsystem.db;
+
+import java.util.concurrent.CompletableFuture;
+
+// Creates indexes and seeds sample data once per process, off the EDT. Each collection is set up by its own
+// task on DbExecutor so the round trips overlap; showtimes wait for seat_maps because seeding them writes seat maps.
+public final class SchemaBootstrap {
+
+    private static volatile CompletableFuture<Void> ready;
+
+    private SchemaBootstrap() {}
+
+    // Starts the bootstrap on first call; later calls return the same future, unless it failed (e.g. MongoDB was
+    // down at startup), in which case it is started again
+    public static CompletableFuture<Void> start() {
+        CompletableFuture<Void> local = ready;
+        if (local == null || local.isCompletedExceptionally()) {
+            synchronized (SchemaBootstrap.class) {
+                local = ready;
+                if (local == null || local.isCompletedExceptionally()) {
+                    local = run();
+                    ready = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public static boolean isReady() {
+        CompletableFuture<Void> local = ready;
+        return local != null && local.isDone() && !local.isCompletedExceptionally();
+    }
+
+    private static CompletableFuture<Void> run() {
+        long startNanos = System.nanoTime();
+        DaoRegistry daos = DaoRegistry.getInstance();
+        CompletableFuture<Void> seatMaps = task(daos.getSeatDAO()::ensureSchema);
+        CompletableFuture<Void> showtimes = seatMaps.thenCompose(v -> task(daos.getShowtimeDAO()::ensureSchema));
+        return CompletableFuture.allOf(
+                task(daos.getUserDAO()::ensureSchema),
+                task(daos.getMovieDAO()::ensureSchema),
+                task(daos.getBookingDAO()::ensureSchema),
+                showtimes
+        ).whenComplete((v, e) -> {
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            if (e != null) System.err.println("Schema bootstrap failed after " + millis + " ms: " + e.getMessage());
+            else System.out.println("Schema bootstrap finished in " + millis + " ms");
+        });
+    }
+
+    private static CompletableFuture<Void> task(Runnable step) {
+        return DbExecutor.getInstance().supplyAsync(() -> {
+            step.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package movieticketbookingsystem.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import movieticketbookingsystem.SeatId;
+
+// Packed seat states for one showtime: bit i of a state's words is seat index i (row * cols + col)
+public class SeatBitmap {
+
+    public static final String STATUS_AVAILABLE = "available";
+    public static final String STATUS_BOOKED = "booked";
+    public static final String STATUS_HELD = "held";
+
+    private final int showtimeId;
+    private final int totalSeats;
+    private final int cols;
+    private final long[] booked;
+    private final long[] held; // Temporary holds (see SeatHoldService); never overlaps booked
+
+    public SeatBitmap(int showtimeId, int totalSeats, int cols, long[] booked, long[] held) {
+        this.showtimeId = showtimeId;
+        this.totalSeats = totalSeats;
+        this.cols = cols;
+        this.booked = booked.length == wordCount(totalSeats) ? booked : Arrays.copyOf(booked, wordCount(totalSeats));
+        this.held = held.length == wordCount(totalSeats) ? held : Arrays.copyOf(held, wordCount(totalSeats));
+    }
+
+    // Empty map (every seat available)
+    public static SeatBitmap empty(int showtimeId, int totalSeats, int cols) {
+        return new SeatBitmap(showtimeId, totalSeats, cols, new long[wordCount(totalSeats)], new long[wordCount(totalSeats)]);
+    }
+
+    // --- Bit helpers ---
+    public static int wordCount(int totalSeats) { return (totalSeats + 63) >>> 6; }
+    public static int wordIndex(int seatIndex) { return seatIndex >>> 6; }
+    public static long bitMask(int seatIndex) { return 1L << (seatIndex & 63); }
+
+    // Positions of the set bits, lowest first ($bitsAllClear/$bitsAllSet take masks in this form)
+    public static List<Integer> bitPositions(long mask) {
+        List<Integer> positions = new ArrayList<>(Long.bitCount(mask));
+        for (long rest = mask; rest != 0; rest &= rest - 1) positions.add(Long.numberOfTrailingZeros(rest));
+        return positions;
+    }
+
+    // Groups seat indexes into one mask per touched word (word index -> mask), ordered by word
+    public static Map<Integer, Long> masksByWord(int[] seatIndexes) {
+        Map<Integer, Long> masks = new TreeMap<>();
+        for (int seatIndex : seatIndexes) {
+            masks.merge(wordIndex(seatIndex), bitMask(seatIndex), (a, b) -> a | b);
+        }
+        return masks;
+    }
+
+    // Converts seat ids to positions in this layout; returns null if any seat does not exist in it
+    public static int[] toSeatIndexes(int[] seatIds, int cols, int totalSeats) {
+        int[] indexes = new int[seatIds.length];
+        for (int i = 0; i < seatIds.length; i++) {
+            int index = SeatId.toIndex(seatIds[i], cols);
+            if (index < 0 || index >= totalSeats) return null;
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    // --- BSON array conversion (words stored as int64 so $bit can operate on them) ---
+    public static List<Long> toWordList(long[] words) {
+        List<Long> list = new ArrayList<>(words.length);
+        for (long w : words) list.add(w);
+        return list;
+    }
+
+    public static long[] fromWordList(List<? extends Number> list, int totalSeats) {
+        long[] words = new long[wordCount(totalSeats)];
+        if (list != null) {
+            for (int i = 0; i < Math.min(list.size(), words.length); i++) {
+                Number n = list.get(i);
+                words[i] = (n != null) ? n.longValue() : 0L;
+            }
+        }
+        return words;
+    }
+
+    // --- Accessors ---
+    public int getShowtimeId() { return showtimeId; }
+    public int getTotalSeats() { return totalSeats; }
+    public int getCols() { return cols; }
+    public long[] getBookedWords() { return booked.clone(); }
+    public long[] getHeldWords() { return held.clone(); }
+
+    public boolean isBooked(int seatIndex) {
+        return (booked[wordIndex(seatIndex)] & bitMask(seatIndex)) != 0;
+    }
+
+    public boolean isHeld(int seatIndex) {
+        return (held[wordIndex(seatIndex)] & bitMask(seatIndex)) != 0;
+    }
+
+    public String statusOf(int seatIndex) {
+        if (isBooked(seatIndex)) return STATUS_BOOKED;
+        return isHeld(seatIndex) ? STATUS_HELD : STATUS_AVAILABLE;
+    }
+
+    public int seatIdAt(int seatIndex) {
+        return SeatId.fromIndex(seatIndex, cols);
+    }
+
+    public int availableCount() {
+        int takenCount = 0;
+        for (int i = 0; i < booked.length; i++) takenCount += Long.bitCount(booked[i] | held[i]);
+        return totalSeats - takenCount;
+    }
+}
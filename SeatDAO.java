@@ -1,143 +1,40 @@
 package movieticketbookingsystem.db;
 
-import com.mongodb.MongoBulkWriteException;
-import com.mongodb.bulk.BulkWriteResult;
-import com.mongodb.client.ClientSession; // Import ClientSession
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
-import movieticketbookingsystem.SeatSelectionPanel; // For constants
-import org.bson.Document;
-import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Indexes;
-import com.mongodb.client.model.IndexOptions; // Import IndexOptions
-import com.mongodb.client.model.Updates;
-import com.mongodb.client.model.WriteModel;
-import com.mongodb.client.model.UpdateOneModel;
-import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult; // Keep if needed elsewhere, not strictly needed here
+import movieticketbookingsystem.SeatLayout;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collection;
 import java.util.Map;
-import java.util.stream.Collectors;
 
-public class SeatDAO {
+// Per-showtime seat maps (booked and held bitsets, see SeatBitmap). Implemented by MongoSeatDAO and the in-memory
+// DataStore; DaoRegistry picks one per process.
+public interface SeatDAO {
 
-    private final MongoCollection<Document> seatsCollection;
+    // Indexes; run once per process by SchemaBootstrap
+    void ensureSchema();
 
-    public SeatDAO() {
-        MongoDatabase database = MongoConnector.getDatabase();
-        this.seatsCollection = database.getCollection("seats");
-        // Ensure compound unique index
-         try {
-             seatsCollection.createIndex(Indexes.compoundIndex(
-                     Indexes.ascending("showtime_id"),
-                     Indexes.ascending("seat_number")
-             ), new IndexOptions().unique(true));
-        } catch (Exception e) {
-             System.err.println("Index creation for seats might have failed: " + e.getMessage());
-        }
+    // The in-memory inventory is authoritative when enabled (it may hold writes not yet flushed)
+    default SeatBitmap getCurrentSeatMap(int showtimeId) {
+        return SeatInventory.isEnabled() ? SeatInventory.getInstance().snapshot(showtimeId) : getSeatMap(showtimeId);
     }
 
-    public Map<String, String> getSeatStatusForShowtime(int showtimeId) {
-        Map<String, String> seatStatusMap = new HashMap<>();
-        Document query = new Document("showtime_id", showtimeId);
-        try (MongoCursor<Document> cursor = seatsCollection.find(query).iterator()) {
-            while (cursor.hasNext()) {
-                Document seatDoc = cursor.next();
-                seatStatusMap.put(seatDoc.getString("seat_number"), seatDoc.getString("status"));
-            }
-        } catch (Exception e) {
-            System.err.println("Error fetching seat status for showtime " + showtimeId + ": " + e.getMessage());
-            e.printStackTrace(); // Log stack trace for debugging
-        }
-        return seatStatusMap;
-    }
-
-     public boolean initializeSeatsForShowtime(int showtimeId, int totalSeats) {
-         // 1. Delete existing seats first
-         try {
-             DeleteResult deleteResult = seatsCollection.deleteMany(Filters.eq("showtime_id", showtimeId));
-             System.out.println("Deleted " + deleteResult.getDeletedCount() + " existing seats for showtime " + showtimeId);
-         } catch (Exception e) {
-              System.err.println("Error deleting existing seats for showtime " + showtimeId + ": " + e.getMessage());
-              return false;
-         }
-
-         // 2. Prepare new seat documents
-         List<Document> newSeatDocs = new ArrayList<>();
-         int maxSeats = Math.min(totalSeats, SeatSelectionPanel.TOTAL_POSITIONS);
-         for (int i = 0; i < maxSeats; i++) {
-             String seatNumber = SeatSelectionPanel.generateSeatNumber(i, SeatSelectionPanel.COLS);
-             if (!"Err".equals(seatNumber)) {
-                 newSeatDocs.add(new Document("showtime_id", showtimeId)
-                                     .append("seat_number", seatNumber)
-                                     .append("status", "available"));
-             }
-         }
+    // Stored seat map, or null if the showtime has none (or on error)
+    SeatBitmap getSeatMap(int showtimeId);
 
-         // 3. Bulk insert new seats
-         if (!newSeatDocs.isEmpty()) {
-             try {
-                 seatsCollection.insertMany(newSeatDocs);
-                 System.out.println("Inserted " + newSeatDocs.size() + " new seats for showtime " + showtimeId);
-                 return true;
-             } catch (Exception e) {
-                 System.err.println("Error bulk inserting seats for showtime " + showtimeId + ": " + e.getMessage());
-                 return false;
-             }
-         }
-         return true; // No seats needed, so successful
-     }
+    default boolean initializeSeatsForShowtime(int showtimeId, int totalSeats) {
+        return initializeSeatsForShowtime(showtimeId, totalSeats, SeatLayout.colsForCapacity(totalSeats));
+    }
 
-    // Must be called within a ClientSession transaction
-    public boolean updateSeatStatusBulk(ClientSession session, int showtimeId, List<String> seatNumbers, String newStatus) {
-        if (seatNumbers == null || seatNumbers.isEmpty()) return true;
+    // Explicit layout: 'cols' seats per row, rows lettered from A
+    boolean initializeSeatsForShowtime(int showtimeId, int totalSeats, int cols);
 
-        List<WriteModel<Document>> updates = seatNumbers.stream()
-            .map(seatNumber -> new UpdateOneModel<Document>(
-                Filters.and(
-                    Filters.eq("showtime_id", showtimeId),
-                    Filters.eq("seat_number", seatNumber)
-                    // Add filter for current status if needed for optimistic locking, e.g.:
-                    // Filters.eq("status", newStatus.equals("booked") ? "available" : "booked")
-                ),
-                Updates.set("status", newStatus)
-            ))
-            .collect(Collectors.toList());
+    // Conditionally sets the held bits (seats must be neither booked nor held) and records them under holdId,
+    // with the time after which other kiosks may reclaim the seats; returns the masks held, or null
+    Map<Integer, Long> holdSeats(int showtimeId, int[] seatIds, String holdId, long expiresAtMillis);
 
-        try {
-            BulkWriteResult result = seatsCollection.bulkWrite(session, updates);
-            System.out.println("Seat status update ["+newStatus+"] result: Matched=" + result.getMatchedCount() + ", Modified=" + result.getModifiedCount());
-            // If optimistic locking is used (checking current status), modified count might be less than seatNumbers.size() if a seat was already taken.
-            // For this implementation, we check availability first, so modifiedCount *should* match.
-            return result.wasAcknowledged() && result.getModifiedCount() == seatNumbers.size();
-        } catch (MongoBulkWriteException e) {
-             System.err.println("Bulk write error updating seat status: " + e.getWriteErrors());
-             throw e; // Re-throw to handle in transaction
-        } catch (Exception e) {
-             System.err.println("Error updating seat status: " + e.getMessage());
-              throw new RuntimeException("Failed to update seat status", e);
-        }
-    }
+    // Clears the bits of holds that are still recorded (across showtimes); a hold already converted into a
+    // booking is skipped, so this never clears a seat someone else has held since. Used for bulk expiry.
+    void releaseHeldSeats(Collection<SeatHoldService.SeatHold> holds);
 
-     // Must be called within a ClientSession transaction
-     public boolean checkSeatsAvailability(ClientSession session, int showtimeId, List<String> seatNumbers) {
-          if (seatNumbers == null || seatNumbers.isEmpty()) return true;
-          try {
-               long unavailableCount = seatsCollection.countDocuments(session,
-                   Filters.and(
-                       Filters.eq("showtime_id", showtimeId),
-                       Filters.in("seat_number", seatNumbers),
-                       Filters.ne("status", "available")
-                   )
-               );
-               return unavailableCount == 0;
-          } catch (Exception e) {
-              System.err.println("Error checking seat availability: " + e.getMessage());
-              return false; // Assume unavailable on error
-          }
-     }
+    // Overwrites the stored bitsets with an authoritative in-memory snapshot (SeatInventory write-behind)
+    boolean writeSeatMap(SeatBitmap seatMap);
 }
\ No newline at end of file
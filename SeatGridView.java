@@ -0,0 +1,190 @@
+package movieticketbookingsystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+// Single component that paints a seat map from a primitive state array. Only seats intersecting the clip
+// are painted, clicks are hit-tested arithmetically, and state changes repaint just the affected cell,
+// so cost does not grow with the number of Swing components.
+public class SeatGridView extends JComponent implements Scrollable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Seat states (one byte per seat)
+    public static final byte AVAILABLE = 0;
+    public static final byte SELECTED = 1;
+    public static final byte HELD = 2;
+    public static final byte BOOKED = 3;
+    public static final byte DISABLED = 4; // Unknown/error
+
+    public interface SeatClickListener {
+        void seatClicked(int seatIndex);
+    }
+
+    private static final int CELL_WIDTH = 55;
+    private static final int CELL_HEIGHT = 35;
+    private static final int GAP = 8;
+    private static final Font SEAT_FONT = new Font("Arial", Font.BOLD, 10);
+
+    private final Color[] fillColors;
+    private final Color[] textColors;
+
+    private int rows;
+    private int cols;
+    private int totalSeats;
+    private byte[] states = new byte[0];
+    private String[] labels = new String[0];
+    private int[] prices = new int[0];
+    private transient SeatClickListener clickListener;
+
+    public SeatGridView(Color available, Color selected, Color held, Color booked) {
+        this.fillColors = new Color[]{available, selected, held, booked, Color.GRAY};
+        this.textColors = new Color[]{Color.WHITE, Color.BLACK, Color.WHITE, Color.WHITE, Color.WHITE};
+        setFont(SEAT_FONT);
+        setOpaque(true);
+        ToolTipManager.sharedInstance().registerComponent(this);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int seatIndex = seatAt(e.getX(), e.getY());
+                if (seatIndex >= 0 && clickListener != null && (states[seatIndex] == AVAILABLE || states[seatIndex] == SELECTED)) {
+                    clickListener.seatClicked(seatIndex);
+                }
+            }
+        });
+    }
+
+    public void setSeatClickListener(SeatClickListener clickListener) {
+        this.clickListener = clickListener;
+    }
+
+    // Replaces the layout; labels and prices are per-seat (index = row * cols + col)
+    public void setSeatLayout(int cols, int totalSeats, String[] labels, int[] prices, byte[] states) {
+        this.cols = Math.max(cols, 1);
+        this.totalSeats = totalSeats;
+        this.rows = (totalSeats + this.cols - 1) / this.cols;
+        this.labels = labels;
+        this.prices = prices;
+        this.states = Arrays.copyOf(states, totalSeats);
+        revalidate();
+        repaint();
+    }
+
+    public void clear() {
+        setSeatLayout(1, 0, new String[0], new int[0], new byte[0]);
+    }
+
+    public int getSeatCount() {
+        return totalSeats;
+    }
+
+    public byte getSeatState(int seatIndex) {
+        return states[seatIndex];
+    }
+
+    // Updates one seat and repaints only its cell
+    public void setSeatState(int seatIndex, byte state) {
+        if (seatIndex < 0 || seatIndex >= totalSeats || states[seatIndex] == state) return;
+        states[seatIndex] = state;
+        repaint(cellBounds(seatIndex));
+    }
+
+    // --- Geometry ---
+
+    private Rectangle cellBounds(int seatIndex) {
+        int row = seatIndex / cols;
+        int col = seatIndex % cols;
+        return new Rectangle(GAP + col * (CELL_WIDTH + GAP), GAP + row * (CELL_HEIGHT + GAP), CELL_WIDTH, CELL_HEIGHT);
+    }
+
+    private int seatAt(int x, int y) {
+        int col = (x - GAP) / (CELL_WIDTH + GAP);
+        int row = (y - GAP) / (CELL_HEIGHT + GAP);
+        if (x < GAP || y < GAP || col >= cols || row >= rows) return -1;
+        if ((x - GAP) % (CELL_WIDTH + GAP) >= CELL_WIDTH || (y - GAP) % (CELL_HEIGHT + GAP) >= CELL_HEIGHT) return -1; // In a gap
+        int seatIndex = row * cols + col;
+        return seatIndex < totalSeats ? seatIndex : -1;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(GAP + cols * (CELL_WIDTH + GAP), GAP + rows * (CELL_HEIGHT + GAP));
+    }
+
+    // --- Painting ---
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(getBackground());
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            FontMetrics fm = g2.getFontMetrics();
+
+            // Visit only the rows/columns intersecting the clip
+            int firstCol = Math.max(0, (clip.x - GAP) / (CELL_WIDTH + GAP));
+            int lastCol = Math.min(cols - 1, (clip.x + clip.width - GAP) / (CELL_WIDTH + GAP));
+            int firstRow = Math.max(0, (clip.y - GAP) / (CELL_HEIGHT + GAP));
+            int lastRow = Math.min(rows - 1, (clip.y + clip.height - GAP) / (CELL_HEIGHT + GAP));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    int seatIndex = row * cols + col;
+                    if (seatIndex >= totalSeats) break;
+                    int x = GAP + col * (CELL_WIDTH + GAP);
+                    int y = GAP + row * (CELL_HEIGHT + GAP);
+                    byte state = states[seatIndex];
+                    g2.setColor(fillColors[state]);
+                    g2.fillRoundRect(x, y, CELL_WIDTH, CELL_HEIGHT, 6, 6);
+                    g2.setColor(textColors[state]);
+                    String label = labels[seatIndex];
+                    g2.drawString(label, x + (CELL_WIDTH - fm.stringWidth(label)) / 2, y + (CELL_HEIGHT + fm.getAscent() - fm.getDescent()) / 2);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int seatIndex = seatAt(e.getX(), e.getY());
+        if (seatIndex < 0) return null;
+        switch (states[seatIndex]) {
+            case AVAILABLE: return labels[seatIndex] + " - Available - ₹" + prices[seatIndex];
+            case SELECTED: return labels[seatIndex] + " - Selected - ₹" + prices[seatIndex];
+            case HELD: return "Held by another customer";
+            case BOOKED: return "Occupied";
+            default: return "Error";
+        }
+    }
+
+    // --- Scrollable (smooth scrolling by whole rows/columns in large halls) ---
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension preferred = getPreferredSize();
+        return new Dimension(Math.min(preferred.width, 12 * (CELL_WIDTH + GAP) + GAP), Math.min(preferred.height, 10 * (CELL_HEIGHT + GAP) + GAP));
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? CELL_HEIGHT + GAP : CELL_WIDTH + GAP;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() { return false; }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() { return false; }
+}
@@ -0,0 +1,165 @@
+package movieticketbookingsystem.db;
+
+import org.bson.types.ObjectId;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Temporary seat holds between selection and payment. Held bits live in the seat map (or the in-memory
+// inventory); expiry is driven by a hashed timer wheel and lapsed holds are released in one bulk write per tick.
+// A hold's bits are cleared only by whoever ends it (release, expiry, or the booking that converts it), so a late
+// release never touches a seat someone else has held since.
+public class SeatHoldService {
+
+    public static final Duration DEFAULT_HOLD_TTL = Duration.ofMinutes(5);
+    private static final long TICK_MILLIS = 250;
+    private static final int WHEEL_SIZE = 512; // ~2 minutes per revolution; longer holds take extra rounds
+
+    private static volatile SeatHoldService instance;
+
+    private final SeatDAO seatDAO;
+    private final HashedTimerWheel<SeatHold> timerWheel;
+
+    private SeatHoldService(SeatDAO seatDAO) {
+        this.seatDAO = seatDAO;
+        this.timerWheel = new HashedTimerWheel<>("seat-hold-expiry", TICK_MILLIS, WHEEL_SIZE, this::expireHolds);
+    }
+
+    public static SeatHoldService getInstance() {
+        SeatHoldService local = instance;
+        if (local == null) {
+            synchronized (SeatHoldService.class) {
+                local = instance;
+                if (local == null) {
+                    local = new SeatHoldService(DaoRegistry.getInstance().getSeatDAO());
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public static void shutdown() {
+        SeatHoldService local = instance;
+        if (local != null) {
+            local.timerWheel.stop();
+            instance = null;
+        }
+    }
+
+    public SeatHold hold(int showtimeId, int[] seatIds) {
+        return hold(showtimeId, seatIds, DEFAULT_HOLD_TTL);
+    }
+
+    // Holds all of the seats or none; returns null if any seat is booked or held by someone else
+    public SeatHold hold(int showtimeId, int[] seatIds, Duration ttl) {
+        String holdId = new ObjectId().toHexString();
+        long expiresAtMillis = System.currentTimeMillis() + ttl.toMillis();
+        Map<Integer, Long> masks = SeatInventory.isEnabled()
+                ? SeatInventory.getInstance().hold(showtimeId, seatIds)
+                : seatDAO.holdSeats(showtimeId, seatIds, holdId, expiresAtMillis);
+        if (masks == null) return null;
+        SeatHold hold = new SeatHold(holdId, showtimeId, seatIds, masks, expiresAtMillis);
+        hold.timeout = timerWheel.schedule(hold, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        return hold;
+    }
+
+    // Gives the seats back before the hold lapses (deselect, navigation away, failed booking)
+    public void release(SeatHold hold) {
+        if (hold != null && hold.finish()) {
+            releaseHolds(Collections.singletonList(hold));
+        }
+    }
+
+    // The hold was converted into a booking; the booking update already cleared its held bits
+    public void complete(SeatHold hold) {
+        if (hold != null) hold.finish();
+    }
+
+    private void expireHolds(List<SeatHold> expired) {
+        List<SeatHold> lapsed = new ArrayList<>(expired.size());
+        for (SeatHold hold : expired) {
+            if (hold.active.compareAndSet(true, false)) lapsed.add(hold); // Else released or completed meanwhile
+        }
+        if (!lapsed.isEmpty()) {
+            releaseHolds(lapsed);
+            System.out.println("Expired " + lapsed.size() + " seat holds");
+        }
+    }
+
+    private void releaseHolds(List<SeatHold> holds) {
+        if (SeatInventory.isEnabled()) {
+            Map<Integer, Map<Integer, Long>> masksByShowtime = new HashMap<>();
+            for (SeatHold hold : holds) {
+                Map<Integer, Long> showtimeMasks = masksByShowtime.computeIfAbsent(hold.showtimeId, id -> new HashMap<>());
+                hold.masks.forEach((word, mask) -> showtimeMasks.merge(word, mask, (a, b) -> a | b));
+            }
+            SeatInventory.getInstance().releaseHeld(masksByShowtime);
+        } else {
+            seatDAO.releaseHeldSeats(holds);
+        }
+    }
+
+    // The given holds that a booking of these seats converts: same showtime, seats all among the booked ones
+    static List<SeatHold> coveredHolds(Collection<SeatHold> holds, int showtimeId, Map<Integer, Long> bookedMasks) {
+        List<SeatHold> covered = new ArrayList<>();
+        if (holds == null) return covered;
+        for (SeatHold hold : holds) {
+            if (hold == null || hold.showtimeId != showtimeId) continue;
+            boolean within = true;
+            for (Map.Entry<Integer, Long> entry : hold.masks.entrySet()) {
+                if ((entry.getValue() & ~bookedMasks.getOrDefault(entry.getKey(), 0L)) != 0) within = false;
+            }
+            if (within) covered.add(hold);
+        }
+        return covered;
+    }
+
+    // Word masks of several holds combined
+    static Map<Integer, Long> combinedMasks(Collection<SeatHold> holds) {
+        Map<Integer, Long> masks = new HashMap<>();
+        for (SeatHold hold : holds) hold.masks.forEach((word, mask) -> masks.merge(word, mask, (a, b) -> a | b));
+        return masks;
+    }
+
+    public static final class SeatHold {
+        private final String holdId; // ObjectId string; names the hold's entry in the seat map
+        private final int showtimeId;
+        private final int[] seatIds;
+        private final Map<Integer, Long> masks;
+        private final long expiresAtMillis;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private volatile HashedTimerWheel.Timeout<SeatHold> timeout;
+
+        SeatHold(String holdId, int showtimeId, int[] seatIds, Map<Integer, Long> masks, long expiresAtMillis) {
+            this.holdId = holdId;
+            this.showtimeId = showtimeId;
+            this.seatIds = seatIds;
+            this.masks = masks;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        // Ends the hold exactly once and cancels its timer; false if it already ended (e.g. expired).
+        // Whoever ends a hold owns clearing its bits.
+        boolean finish() {
+            if (!active.compareAndSet(true, false)) return false;
+            HashedTimerWheel.Timeout<SeatHold> t = timeout;
+            if (t != null) t.cancel();
+            return true;
+        }
+
+        String getHoldId() { return holdId; }
+        Map<Integer, Long> getMasks() { return masks; }
+        public int getShowtimeId() { return showtimeId; }
+        public int[] getSeatIds() { return seatIds.clone(); }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+        public boolean isActive() { return active.get(); }
+    }
+}
@@ -0,0 +1,69 @@
+package movieticketbookingsystem;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Compact seat identifier: row in the high 16 bits, 0-based column in the low 16 bits.
+// Ids compare in seat-map order (A1, A2 .. B1) as plain ints and don't depend on a hall's layout;
+// labels like "A1" are only built for display and parsed when reading legacy data.
+public final class SeatId {
+
+    public static final int INVALID = -1;
+
+    private SeatId() {}
+
+    public static int of(int row, int col) { return (row << 16) | col; }
+    public static int row(int seatId) { return seatId >>> 16; }
+    public static int col(int seatId) { return seatId & 0xFFFF; }
+
+    // Seat at the given seat-map position (row * cols + col)
+    public static int fromIndex(int seatIndex, int cols) {
+        return of(seatIndex / cols, seatIndex % cols);
+    }
+
+    // Seat-map position in a layout with 'cols' seats per row, or -1 if the seat cannot exist there
+    public static int toIndex(int seatId, int cols) {
+        if (seatId < 0 || cols <= 0 || col(seatId) >= cols) return -1;
+        return row(seatId) * cols + col(seatId);
+    }
+
+    public static String label(int seatId) {
+        if (seatId < 0) return "Err";
+        return "" + (char) ('A' + row(seatId)) + (col(seatId) + 1);
+    }
+
+    // "A1, A2, B5" for display
+    public static String format(int[] seatIds) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < seatIds.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(label(seatIds[i]));
+        }
+        return sb.toString();
+    }
+
+    // Inverse of label; returns INVALID for malformed labels
+    public static int parse(String label) {
+        if (label == null || label.length() < 2) return INVALID;
+        int row = label.charAt(0) - 'A';
+        if (row < 0 || row > 25) return INVALID;
+        try {
+            int seatNumInRow = Integer.parseInt(label.substring(1));
+            if (seatNumInRow < 1 || seatNumInRow > 0xFFFF) return INVALID;
+            return of(row, seatNumInRow - 1);
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    // Parses legacy string seat lists; malformed entries are skipped
+    public static int[] parseAll(List<String> labels) {
+        int[] seatIds = new int[labels.size()];
+        int count = 0;
+        for (String label : labels) {
+            int seatId = parse(label);
+            if (seatId != INVALID) seatIds[count++] = seatId;
+        }
+        return (count == seatIds.length) ? seatIds : Arrays.copyOf(seatIds, count);
+    }
+}
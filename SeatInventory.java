@@ -0,0 +1,309 @@
+package movieticketbookingsystem.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import movieticketbookingsystem.SeatId;
+
+// In-process seat inventory: per-showtime packed bitsets claimed with CAS, persisted to 'seat_maps' in the background.
+// Authoritative only for a single node; enable with -Dseat.inventory=memory (default 'database' keeps the
+// transactional seat checks in BookingDAO for multi-kiosk deployments).
+public class SeatInventory {
+
+    private static final long FLUSH_INTERVAL_MS = 50;
+
+    private static volatile SeatInventory instance;
+
+    private final SeatDAO seatDAO;
+    private final ConcurrentHashMap<Integer, ShowtimeSeats> showtimes = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<ShowtimeSeats> dirtyQueue = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object(); // Orders seat map writes against invalidate's replacement write
+
+    private SeatInventory(SeatDAO seatDAO) {
+        this.seatDAO = seatDAO;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "seat-inventory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushDirty, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Never with the in-memory storage backend, whose seat maps are already in memory
+    public static boolean isEnabled() {
+        return "memory".equalsIgnoreCase(System.getProperty("seat.inventory", "database")) && !DaoRegistry.isInMemory();
+    }
+
+    public static SeatInventory getInstance() {
+        SeatInventory local = instance;
+        if (local == null) {
+            synchronized (SeatInventory.class) {
+                local = instance;
+                if (local == null) {
+                    local = new SeatInventory(DaoRegistry.getInstance().getSeatDAO());
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    // Flushes pending writes and stops the background writer (no-op if never started)
+    public static void shutdown() {
+        SeatInventory local = instance;
+        if (local != null) {
+            local.flusher.shutdown();
+            try {
+                local.flusher.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            local.flushDirty();
+            instance = null;
+        }
+    }
+
+    // --- Seat operations ---
+
+    // All-or-nothing claim of the given seats, converting the caller's own holds among them; no DB round trip
+    // once the showtime is loaded
+    public boolean claim(int showtimeId, int[] seatIds, Collection<SeatHoldService.SeatHold> ownHolds) {
+        ShowtimeSeats seats = getShowtime(showtimeId);
+        if (seats == null) return false;
+        int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, seats.cols, seats.totalSeats);
+        if (seatIndexes == null) return false;
+        Map<Integer, Long> masks = SeatBitmap.masksByWord(seatIndexes);
+        return seats.claim(masks, SeatHoldService.coveredHolds(ownHolds, showtimeId, masks));
+    }
+
+    // Releases seats (cancellation or a rolled-back booking) and schedules the write
+    public void release(int showtimeId, int[] seatIds) {
+        ShowtimeSeats seats = getShowtime(showtimeId);
+        if (seats == null) return;
+        int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, seats.cols, seats.totalSeats);
+        if (seatIndexes == null) return;
+        seats.release(SeatBitmap.masksByWord(seatIndexes));
+        markDirty(seats);
+    }
+
+    // Seats among the given ones that are booked, or held other than by the caller's active holds (reported
+    // after a failed claim)
+    public int[] findTaken(int showtimeId, int[] seatIds, Collection<SeatHoldService.SeatHold> ownHolds) {
+        ShowtimeSeats seats = getShowtime(showtimeId);
+        if (seats == null) return new int[0];
+        List<SeatHoldService.SeatHold> active = new ArrayList<>();
+        if (ownHolds != null) {
+            for (SeatHoldService.SeatHold hold : ownHolds) {
+                if (hold != null && hold.getShowtimeId() == showtimeId && hold.isActive()) active.add(hold);
+            }
+        }
+        Map<Integer, Long> ownMasks = SeatHoldService.combinedMasks(active);
+        int[] takenSeats = new int[seatIds.length];
+        int count = 0;
+        for (int seatId : seatIds) {
+            int index = SeatId.toIndex(seatId, seats.cols);
+            if (index < 0 || index >= seats.totalSeats) continue;
+            int word = SeatBitmap.wordIndex(index);
+            long bit = SeatBitmap.bitMask(index);
+            boolean heldByOthers = (seats.held.get(word) & bit) != 0 && (ownMasks.getOrDefault(word, 0L) & bit) == 0;
+            if ((seats.booked.get(word) & bit) != 0 || heldByOthers) takenSeats[count++] = seatId;
+        }
+        return Arrays.copyOf(takenSeats, count);
+    }
+
+    // Holds seats that are neither booked nor held; returns the held word masks, or null on conflict
+    public Map<Integer, Long> hold(int showtimeId, int[] seatIds) {
+        ShowtimeSeats seats = getShowtime(showtimeId);
+        if (seats == null) return null;
+        int[] seatIndexes = SeatBitmap.toSeatIndexes(seatIds, seats.cols, seats.totalSeats);
+        if (seatIndexes == null) return null;
+        Map<Integer, Long> masks = SeatBitmap.masksByWord(seatIndexes);
+        if (!seats.hold(masks)) return null;
+        markDirty(seats);
+        return masks;
+    }
+
+    // Bulk release of lapsed or abandoned holds (showtime -> word masks)
+    public void releaseHeld(Map<Integer, Map<Integer, Long>> masksByShowtime) {
+        masksByShowtime.forEach((showtimeId, masks) -> {
+            ShowtimeSeats seats = showtimes.get(showtimeId);
+            if (seats == null) return;
+            masks.forEach((word, mask) -> clearBits(seats.held, word, mask));
+            markDirty(seats);
+        });
+    }
+
+    // Schedules the background write of a committed claim
+    public void persist(int showtimeId) {
+        ShowtimeSeats seats = showtimes.get(showtimeId);
+        if (seats != null) markDirty(seats);
+    }
+
+    public SeatBitmap snapshot(int showtimeId) {
+        ShowtimeSeats seats = getShowtime(showtimeId);
+        return (seats != null) ? seats.snapshot() : null;
+    }
+
+    // Replaces the stored seat map (replaceStored, e.g. re-initializing seats) and drops the cached state so the
+    // next access reloads it. Runs under the flush lock: pending changes are written first, so nothing is lost if
+    // the replacement fails, and no snapshot of the old state can land after it. State loaded while the
+    // replacement runs predates it and is dropped too.
+    public void invalidate(int showtimeId, Runnable replaceStored) {
+        synchronized (flushLock) {
+            ShowtimeSeats previous = showtimes.remove(showtimeId);
+            if (previous != null && previous.dirty.getAndSet(false) && !seatDAO.writeSeatMap(previous.snapshot())) {
+                System.err.println("Could not flush seat map for showtime " + showtimeId + " before replacing it");
+            }
+            try {
+                replaceStored.run();
+            } finally {
+                showtimes.remove(showtimeId);
+            }
+        }
+    }
+
+    private ShowtimeSeats getShowtime(int showtimeId) {
+        ShowtimeSeats seats = showtimes.get(showtimeId);
+        if (seats != null) return seats;
+        SeatBitmap stored = seatDAO.getSeatMap(showtimeId);
+        if (stored == null) return null;
+        return showtimes.computeIfAbsent(showtimeId, id -> new ShowtimeSeats(stored));
+    }
+
+    // --- Write-behind ---
+
+    private void markDirty(ShowtimeSeats seats) {
+        if (seats.dirty.compareAndSet(false, true)) {
+            dirtyQueue.add(seats);
+        }
+    }
+
+    // Coalesces all changes since the last flush into one write per showtime. Instances dropped by invalidate
+    // are skipped: their stored seat map has been replaced since.
+    private void flushDirty() {
+        synchronized (flushLock) {
+            ShowtimeSeats seats;
+            while ((seats = dirtyQueue.poll()) != null) {
+                seats.dirty.set(false);
+                if (showtimes.get(seats.showtimeId) != seats) continue;
+                SeatBitmap snapshot = seats.snapshot();
+                if (!seatDAO.writeSeatMap(snapshot)) {
+                    markDirty(seats); // Retry on the next tick
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void clearBits(AtomicLongArray words, int word, long mask) {
+        long current;
+        do {
+            current = words.get(word);
+        } while (!words.compareAndSet(word, current, current & ~mask));
+    }
+
+    // --- Per-showtime state ---
+
+    private static final class ShowtimeSeats {
+        final int showtimeId;
+        final int totalSeats;
+        final int cols;
+        final AtomicLongArray booked;
+        final AtomicLongArray held;
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+
+        ShowtimeSeats(SeatBitmap stored) {
+            this.showtimeId = stored.getShowtimeId();
+            this.totalSeats = stored.getTotalSeats();
+            this.cols = stored.getCols();
+            this.booked = new AtomicLongArray(stored.getBookedWords());
+            this.held = new AtomicLongArray(stored.getHeldWords().length); // Persisted holds belong to a previous run
+        }
+
+        // Books the seats, which must be unheld except by ownHolds. Ending each own hold (the same CAS expiry and
+        // release use) proves it was still ours after the booked bits went in: a hold that lapsed first may
+        // already be someone else's, so the claim is undone. Only the bits of holds ended here are cleared.
+        boolean claim(Map<Integer, Long> masks, List<SeatHoldService.SeatHold> ownHolds) {
+            if (!setAll(booked, masks)) return false;
+            Map<Integer, Long> ownMasks = SeatHoldService.combinedMasks(ownHolds);
+            for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+                long othersMask = entry.getValue() & ~ownMasks.getOrDefault(entry.getKey(), 0L);
+                if ((held.get(entry.getKey()) & othersMask) != 0) {
+                    release(masks);
+                    return false;
+                }
+            }
+            List<SeatHoldService.SeatHold> ended = new ArrayList<>(ownHolds.size());
+            for (SeatHoldService.SeatHold hold : ownHolds) {
+                if (!hold.finish()) {
+                    release(masks);
+                    SeatHoldService.combinedMasks(ended).forEach((word, mask) -> clearBits(held, word, mask));
+                    return false;
+                }
+                ended.add(hold);
+            }
+            ownMasks.forEach((word, mask) -> clearBits(held, word, mask));
+            return true;
+        }
+
+        // Holds require the seats to be free in both bitsets
+        boolean hold(Map<Integer, Long> masks) {
+            if (!setAll(held, masks)) return false;
+            for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+                if ((booked.get(entry.getKey()) & entry.getValue()) != 0) {
+                    masks.forEach((word, mask) -> clearBits(held, word, mask));
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Sets bits word by word in ascending order; on conflict undoes the words already taken
+        private static boolean setAll(AtomicLongArray words, Map<Integer, Long> masks) {
+            int[] claimedWords = new int[masks.size()];
+            long[] claimedMasks = new long[masks.size()];
+            int claimed = 0;
+            for (Map.Entry<Integer, Long> entry : masks.entrySet()) {
+                int word = entry.getKey();
+                long mask = entry.getValue();
+                while (true) {
+                    long current = words.get(word);
+                    if ((current & mask) != 0) {
+                        for (int i = 0; i < claimed; i++) clearBits(words, claimedWords[i], claimedMasks[i]);
+                        return false;
+                    }
+                    if (words.compareAndSet(word, current, current | mask)) break;
+                }
+                claimedWords[claimed] = word;
+                claimedMasks[claimed] = mask;
+                claimed++;
+            }
+            return true;
+        }
+
+        void release(Map<Integer, Long> masks) {
+            masks.forEach((word, mask) -> clearBits(booked, word, mask));
+        }
+
+        SeatBitmap snapshot() {
+            long[] bookedWords = new long[booked.length()];
+            long[] heldWords = new long[held.length()];
+            for (int i = 0; i < bookedWords.length; i++) {
+                bookedWords[i] = booked.get(i);
+                heldWords[i] = held.get(i);
+            }
+            return new SeatBitmap(showtimeId, totalSeats, cols, bookedWords, heldWords);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package movieticketbookingsystem;
+
+// Hall layout and seat price rules, shared by the booking screens and the storage layer. Seat maps are
+// row-major with lettered rows (A-Z); prices fall from the front rows to the back.
+public final class SeatLayout {
+
+    public static final int ROWS = 8; // Default layout for small halls
+    public static final int COLS = 8;
+    public static final int MAX_ROWS = 26; // Rows are lettered A-Z
+
+    // Front to back; each tier covers an equal share of the hall's rows
+    private static final int[] ROW_PRICES = {300, 250, 200, 150};
+
+    private SeatLayout() {}
+
+    // Price by row index (0 = row A) in a hall of 'rows' rows. The default 8-row hall is priced in pairs (A-B,
+    // C-D, E-F, G-H); deeper halls stretch the same tiers over all their rows.
+    public static int getRowPrice(int row, int rows) {
+        if (rows <= 0) return ROW_PRICES[0];
+        int clamped = Math.max(0, Math.min(row, rows - 1));
+        return ROW_PRICES[clamped * ROW_PRICES.length / rows];
+    }
+
+    public static int rowCount(int totalSeats, int cols) {
+        return (cols <= 0) ? 0 : (totalSeats + cols - 1) / cols;
+    }
+
+    // Halls beyond MAX_ROWS rows of COLS get wider rows
+    public static int colsForCapacity(int totalSeats) {
+        return Math.max(COLS, (totalSeats + MAX_ROWS - 1) / MAX_ROWS);
+    }
+
+    // Seats a hall of this width can hold
+    public static int maxSeats(int cols) {
+        return cols * MAX_ROWS;
+    }
+}
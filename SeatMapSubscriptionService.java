@@ -0,0 +1,181 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Pushes per-seat changes to subscribers. One change stream on 'seat_maps' per JVM; each event is diffed
+// against the last known bitsets of that showtime so listeners only receive the seats that changed.
+// With the in-memory storage backend there is no change stream; DataStore reports its writes via seatMapChanged.
+public class SeatMapSubscriptionService {
+
+    // Called on the change-stream thread; UI listeners must hop to the EDT themselves
+    public interface SeatChangeListener {
+        void onSeatsChanged(SeatBitmap seatMap, int[] changedSeatIndexes); // New state of the seats is in seatMap
+    }
+
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private static volatile SeatMapSubscriptionService instance;
+
+    private final MongoCollection<Document> seatMapsCollection; // null with the in-memory backend
+    private final SeatDAO seatDAO;
+    private final Map<Integer, List<SeatChangeListener>> listeners = new ConcurrentHashMap<>();
+    private final Map<Integer, SeatBitmap> lastKnown = new ConcurrentHashMap<>();
+    private final Thread watcher;
+    private volatile boolean running = true;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private BsonDocument resumeToken; // Watcher thread only
+
+    private SeatMapSubscriptionService() {
+        this.seatMapsCollection = DaoRegistry.isInMemory() ? null : MongoConnector.getDatabase().getCollection("seat_maps");
+        this.seatDAO = DaoRegistry.getInstance().getSeatDAO();
+        this.watcher = new Thread(this::watchLoop, "seat-map-change-stream");
+        this.watcher.setDaemon(true);
+        if (seatMapsCollection != null) this.watcher.start();
+    }
+
+    public static SeatMapSubscriptionService getInstance() {
+        SeatMapSubscriptionService local = instance;
+        if (local == null) {
+            synchronized (SeatMapSubscriptionService.class) {
+                local = instance;
+                if (local == null) {
+                    local = new SeatMapSubscriptionService();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public static void shutdown() {
+        SeatMapSubscriptionService local = instance;
+        if (local != null) {
+            local.running = false;
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> c = local.cursor;
+            if (c != null) {
+                try { c.close(); } catch (Exception ignored) { }
+            }
+            local.watcher.interrupt();
+            instance = null;
+        }
+    }
+
+    // Called by the in-memory backend after each seat map write (on the writer's thread); no-op if nobody subscribed yet
+    static void seatMapChanged(SeatBitmap seatMap) {
+        SeatMapSubscriptionService local = instance;
+        if (local != null && local.listeners.containsKey(seatMap.getShowtimeId())) local.publish(seatMap);
+    }
+
+    // The caller's current view of the map is the diff baseline, so nothing between its read and now is lost
+    public void subscribe(int showtimeId, SeatBitmap currentView, SeatChangeListener listener) {
+        if (currentView != null) lastKnown.putIfAbsent(showtimeId, currentView);
+        listeners.computeIfAbsent(showtimeId, id -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void unsubscribe(int showtimeId, SeatChangeListener listener) {
+        List<SeatChangeListener> showtimeListeners = listeners.get(showtimeId);
+        if (showtimeListeners == null) return;
+        showtimeListeners.remove(listener);
+        if (showtimeListeners.isEmpty()) {
+            listeners.remove(showtimeId);
+            lastKnown.remove(showtimeId);
+        }
+    }
+
+    // --- Change stream ---
+
+    private void watchLoop() {
+        List<Bson> pipeline = Collections.singletonList(
+                Aggregates.match(Filters.in("operationType", "insert", "update", "replace")));
+        while (running) {
+            try {
+                ChangeStreamIterable<Document> stream = seatMapsCollection.watch(pipeline).fullDocument(FullDocument.UPDATE_LOOKUP);
+                if (resumeToken != null) stream = stream.resumeAfter(resumeToken);
+                cursor = stream.cursor();
+                while (running && cursor.hasNext()) {
+                    ChangeStreamDocument<Document> event = cursor.next();
+                    resumeToken = event.getResumeToken();
+                    if (event.getFullDocument() != null) {
+                        handleSeatMap(event.getFullDocument());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                System.err.println("Seat map change stream interrupted, reconnecting: " + e.getMessage());
+                resyncSubscribed(); // Events may have been missed if the resume token is no longer valid
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleSeatMap(Document seatMapDoc) {
+        int showtimeId = seatMapDoc.getInteger("showtime_id", -1);
+        if (!listeners.containsKey(showtimeId)) return; // Nobody is looking at this showtime
+        publish(MongoSeatDAO.mapDocumentToSeatMap(seatMapDoc));
+    }
+
+    private void resyncSubscribed() {
+        for (Integer showtimeId : listeners.keySet()) {
+            SeatBitmap current = seatDAO.getSeatMap(showtimeId);
+            if (current != null) publish(current);
+        }
+    }
+
+    private void publish(SeatBitmap updated) {
+        int showtimeId = updated.getShowtimeId();
+        SeatBitmap previous = lastKnown.put(showtimeId, updated);
+        int[] changedSeatIndexes = diff(previous, updated);
+        if (changedSeatIndexes.length == 0) return;
+        List<SeatChangeListener> showtimeListeners = listeners.get(showtimeId);
+        if (showtimeListeners == null) return;
+        for (SeatChangeListener listener : showtimeListeners) {
+            try {
+                listener.onSeatsChanged(updated, changedSeatIndexes);
+            } catch (Exception e) {
+                System.err.println("Seat change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Word-wise XOR of both state bitsets; only set bits are visited
+    static int[] diff(SeatBitmap previous, SeatBitmap updated) {
+        int[] changedSeatIndexes = new int[16];
+        int count = 0;
+        long[] newBooked = updated.getBookedWords();
+        long[] newHeld = updated.getHeldWords();
+        long[] oldBooked = (previous != null) ? previous.getBookedWords() : new long[newBooked.length];
+        long[] oldHeld = (previous != null) ? previous.getHeldWords() : new long[newHeld.length];
+        for (int word = 0; word < newBooked.length; word++) {
+            long changed = (word < oldBooked.length ? oldBooked[word] ^ newBooked[word] : newBooked[word])
+                    | (word < oldHeld.length ? oldHeld[word] ^ newHeld[word] : newHeld[word]);
+            while (changed != 0) {
+                int seatIndex = (word << 6) + Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                if (seatIndex >= updated.getTotalSeats()) break;
+                if (count == changedSeatIndexes.length) changedSeatIndexes = Arrays.copyOf(changedSeatIndexes, count * 2);
+                changedSeatIndexes[count++] = seatIndex;
+            }
+        }
+        return Arrays.copyOf(changedSeatIndexes, count);
+    }
+}
@@ -6,13 +6,15 @@ import java.awt.event.ActionEvent;
 import java.text.NumberFormat; // For currency
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator; // For sorting seats
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 // Swing Imports
 import javax.swing.*;
@@ -24,8 +26,12 @@ import javax.swing.event.ChangeListener;
 
 // DB and DAO Imports (assuming they are in the db package)
 import movieticketbookingsystem.db.BookingDAO;
-import movieticketbookingsystem.db.MovieDAO;
+import movieticketbookingsystem.db.DaoRegistry;
+import movieticketbookingsystem.db.DbExecutor;
+import movieticketbookingsystem.db.SeatBitmap;
 import movieticketbookingsystem.db.SeatDAO;
+import movieticketbookingsystem.db.SeatMapSubscriptionService;
+import movieticketbookingsystem.db.SeatHoldService;
 import movieticketbookingsystem.db.ShowtimeDAO; // Might need if re-init seats
 
 public class SeatSelectionPanel extends JPanel {
@@ -33,27 +39,24 @@ public class SeatSelectionPanel extends JPanel {
     // --- Core Fields ---
     private MovieTicketBookingSystem mainApp;
     private Showtime currentShowtime; // Store the current showtime object
-    private JPanel seatGridPanel;
-    private List<JToggleButton> seatButtons;
-    private Map<String, Integer> selectedSeatsWithPrices; // SeatNumber -> Price
+    private SeatGridView seatGrid; // One painted component for the whole hall
+    private JLabel gridMessageLabel;
+    private int currentCols = SeatLayout.COLS; // Layout of the seat map being shown
+    private BitSet selectedSeats; // Seat-map indexes (row * cols + col) of our selection
+    private SeatHoldService.SeatHold[] seatHolds = new SeatHoldService.SeatHold[0]; // By seat-map index, taken when selected
+    private final BitSet pendingHolds = new BitSet(); // Selected seats whose hold request is still in flight
+    private int panelGeneration; // Bumped by setupPanel; hold results from an earlier visit are given back
+    private PanelLoader seatMapLoader;
 
     // --- DAOs ---
     private SeatDAO seatDAO;
-    private MovieDAO movieDAO;
     private BookingDAO bookingDAO;
 
     // --- Constants ---
     private final Color AVAILABLE_COLOR = new Color(34, 139, 34);
     private final Color SELECTED_COLOR = new Color(255, 165, 0);
     private final Color OCCUPIED_COLOR = new Color(200, 0, 0);
-    private final Color PLACEHOLDER_COLOR = new Color(240, 240, 240);
-    public static final int ROWS = 8; // Made public static
-    public static final int COLS = 8; // Made public static
-    public static final int TOTAL_POSITIONS = ROWS * COLS;
-    private static final int PRICE_ROW_AB = 300;
-    private static final int PRICE_ROW_CD = 250;
-    private static final int PRICE_ROW_EF = 200;
-    private static final int PRICE_ROW_GH = 150;
+    private final Color HELD_COLOR = new Color(120, 120, 180);
     private static final Map<String, Integer> SNACK_PRICES = new HashMap<>();
     static {
         SNACK_PRICES.put("Popcorn", 120);
@@ -72,29 +75,41 @@ public class SeatSelectionPanel extends JPanel {
     private JLabel snackCostLabel;
     private JLabel totalCostLabel;
     private JLabel titleLabel;
+    private JSpinner partySizeSpinner;
+    private JLabel bestSeatsLabel;
+    private JButton confirmButton;
+
+    // Idempotency key of the last submission; a retry of the same seats for the same showtime reuses it
+    private String pendingRequestKey;
+    private int pendingRequestShowtimeId = -1;
+    private int[] pendingRequestSeatIds = new int[0];
 
     // --- State ---
     private int currentSeatCost = 0;
     private int currentSnackCost = 0;
     private final ChangeListener snackChangeListener = this::handleSnackQuantityChange;
+    private final SeatMapSubscriptionService.SeatChangeListener seatChangeListener =
+            (seatMap, changedSeatIndexes) -> SwingUtilities.invokeLater(() -> applySeatChanges(seatMap, changedSeatIndexes));
 
 
     // --- Constructor ---
     public SeatSelectionPanel(MovieTicketBookingSystem mainApp) {
         this.mainApp = mainApp;
         // Instantiate MongoDB DAOs
-        this.seatDAO = new SeatDAO();
-        this.movieDAO = new MovieDAO();
-        this.bookingDAO = new BookingDAO();
+        this.seatDAO = DaoRegistry.getInstance().getSeatDAO();
+        this.bookingDAO = DaoRegistry.getInstance().getBookingDAO();
         setupUI(); // Keep UI setup separate
+        this.seatMapLoader = new PanelLoader("seat map", this, state -> {
+            if (state == PanelLoader.State.LOADING) showGridMessage("Loading seats...");
+            confirmButton.setEnabled(!seatMapLoader.isLoading());
+        });
     }
 
     // --- UI Setup Method ---
     private void setupUI() {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        seatButtons = new ArrayList<>();
-        selectedSeatsWithPrices = new HashMap<>();
+        selectedSeats = new BitSet();
         snackSpinners = new HashMap<>();
 
         // Title Label (North)
@@ -107,10 +122,14 @@ public class SeatSelectionPanel extends JPanel {
         JPanel screenPanel = createScreenPanel(); // Helper for Screen UI
         mainContentPanel.add(screenPanel, BorderLayout.NORTH);
 
-        seatGridPanel = new JPanel(); // Grid layout set in setupPanel
+        seatGrid = new SeatGridView(AVAILABLE_COLOR, SELECTED_COLOR, HELD_COLOR, OCCUPIED_COLOR);
+        seatGrid.setSeatClickListener(this::handleSeatClick);
+        gridMessageLabel = new JLabel(" ", SwingConstants.CENTER);
+        gridMessageLabel.setVisible(false);
         JPanel gridContainer = new JPanel(new FlowLayout(FlowLayout.CENTER)); // Centers grid
         gridContainer.setBorder(BorderFactory.createEmptyBorder(15, 0, 15, 0)); // Padding
-        gridContainer.add(seatGridPanel);
+        gridContainer.add(gridMessageLabel);
+        gridContainer.add(seatGrid);
         JScrollPane seatScrollPane = new JScrollPane(gridContainer); // Make grid scrollable
         mainContentPanel.add(seatScrollPane, BorderLayout.CENTER);
         add(mainContentPanel, BorderLayout.CENTER);
@@ -135,18 +154,35 @@ public class SeatSelectionPanel extends JPanel {
         costsPanel.add(totalCostLabel);
         bottomPanel.add(costsPanel, BorderLayout.NORTH);
 
+        // Best Seats Panel (Inside Bottom, Center) - Suggests contiguous seats for a group
+        JPanel bestSeatsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        partySizeSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 20, 1));
+        partySizeSpinner.setFont(new Font("Arial", Font.PLAIN, 12));
+        partySizeSpinner.addChangeListener(e -> updateBestSeatsSuggestion());
+        JButton bestSeatsButton = new JButton("Select Best Seats");
+        bestSeatsButton.setFont(new Font("Arial", Font.PLAIN, 12));
+        bestSeatsButton.addActionListener(e -> selectBestSeats());
+        bestSeatsLabel = new JLabel(" ");
+        bestSeatsLabel.setFont(new Font("Arial", Font.ITALIC, 12));
+        bestSeatsPanel.add(new JLabel("Party size:"));
+        bestSeatsPanel.add(partySizeSpinner);
+        bestSeatsPanel.add(bestSeatsButton);
+        bestSeatsPanel.add(bestSeatsLabel);
+        bottomPanel.add(bestSeatsPanel, BorderLayout.CENTER);
+
         // Action Panel (Inside Bottom, South) - Holds Legend and Buttons
         JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         JPanel legendPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 5)); // Legend
         legendPanel.add(createLegendLabel("Available", AVAILABLE_COLOR));
         legendPanel.add(createLegendLabel("Selected", SELECTED_COLOR));
+        legendPanel.add(createLegendLabel("Held", HELD_COLOR));
         legendPanel.add(createLegendLabel("Occupied", OCCUPIED_COLOR));
 
         JButton backButton = new JButton("Back to Movies"); // Buttons
         backButton.setFont(new Font("Arial", Font.PLAIN, 14));
-        backButton.addActionListener(e -> mainApp.showPanel(MovieTicketBookingSystem.MOVIE_SELECTION_PANEL));
+        backButton.addActionListener(e -> { releaseHolds(); mainApp.showPanel(MovieTicketBookingSystem.MOVIE_SELECTION_PANEL); });
 
-        JButton confirmButton = new JButton("Proceed to Payment");
+        confirmButton = new JButton("Proceed to Payment");
         confirmButton.setFont(new Font("Arial", Font.BOLD, 14));
         confirmButton.setBackground(new Color(0, 150, 0));
         confirmButton.setForeground(Color.WHITE);
@@ -227,90 +263,138 @@ public class SeatSelectionPanel extends JPanel {
 
     // --- Setup Panel with Data ---
     public void setupPanel(Showtime showtime) {
+        releaseHolds(); // Give back seats held by a previous visit
+        if (currentShowtime != null) {
+            SeatMapSubscriptionService.getInstance().unsubscribe(currentShowtime.getShowtimeId(), seatChangeListener);
+        }
         this.currentShowtime = showtime;
+        panelGeneration++;
         // Reset state
-        selectedSeatsWithPrices.clear();
-        seatButtons.clear();
-        seatGridPanel.removeAll(); // Clear previous grid components
+        selectedSeats.clear();
+        pendingHolds.clear();
+        seatGrid.clear();
+        gridMessageLabel.setVisible(false);
         currentSeatCost = 0;
         currentSnackCost = 0;
         resetSnackSpinners();
 
         if (showtime == null) {
              titleLabel.setText("Select Seats");
-             seatGridPanel.add(new JLabel("Error: No showtime selected."));
+             showGridMessage("Error: No showtime selected.");
              updateCostLabels();
-             seatGridPanel.revalidate(); seatGridPanel.repaint(); // Refresh empty grid
              return;
         }
 
-        // Fetch Movie Title using MovieDAO
-        Optional<Movie> movieOpt = movieDAO.getMovieByIntId(showtime.getMovieId());
-        String movieTitle = movieOpt.map(Movie::getTitle).orElse("Unknown Movie");
+        // Movie was resolved when the showtime was picked
+        String movieTitle = getSelectedMovieTitle();
         titleLabel.setText("Select Seats for: " + movieTitle + " (" + showtime.getShowDateTime().format(SHOWTIME_FORMAT) + ")");
+        updateCostLabels();
 
-        // Fetch Seat Status from DB using SeatDAO
-        Map<String, String> seatStatusMap = seatDAO.getSeatStatusForShowtime(showtime.getShowtimeId());
+        // Seat map is fetched in the background; a newer setupPanel supersedes this load
+        seatMapLoader.reset();
+        seatMapLoader.load(() -> loadSeatMap(showtime), seatMap -> showSeatMap(showtime, seatMap),
+                error -> showGridMessage("Error: Failed to initialize/fetch seats."));
+    }
 
-        // Attempt seat initialization if map is empty and should have seats
-        if (seatStatusMap.isEmpty() && showtime.getTotalSeats() > 0) {
+    // Background: the current seat map, initializing it if the showtime has none yet
+    private SeatBitmap loadSeatMap(Showtime showtime) {
+        SeatBitmap seatMap = seatDAO.getCurrentSeatMap(showtime.getShowtimeId());
+        if (seatMap == null && showtime.getTotalSeats() > 0) {
              System.out.println("Seat map empty for showtime " + showtime.getShowtimeId() + ", attempting initialization...");
-             boolean initOk = seatDAO.initializeSeatsForShowtime(showtime.getShowtimeId(), showtime.getTotalSeats());
-             if (initOk) {
-                 seatStatusMap = seatDAO.getSeatStatusForShowtime(showtime.getShowtimeId()); // Re-fetch
-             } else {
-                 seatGridPanel.add(new JLabel("Error: Failed to initialize/fetch seats."));
-                 updateCostLabels();
-                 seatGridPanel.revalidate(); seatGridPanel.repaint();
-                 return; // Stop if seats couldn't be initialized
+             if (seatDAO.initializeSeatsForShowtime(showtime.getShowtimeId(), showtime.getTotalSeats())) {
+                 seatMap = seatDAO.getCurrentSeatMap(showtime.getShowtimeId()); // Re-fetch
              }
         }
+        return seatMap;
+    }
 
-        // Build Seat Grid UI
-        seatGridPanel.setLayout(new GridLayout(ROWS, COLS, 8, 8)); // Set layout
-        int seatsInShow = showtime.getTotalSeats();
-
-        for (int i = 0; i < TOTAL_POSITIONS; i++) {
-            String seatNumber = generateSeatNumber(i, COLS);
-            if (i < seatsInShow) { // Only process positions within the showtime's total seats
-                int price = getSeatPrice(seatNumber);
-                JToggleButton seatButton = new JToggleButton(seatNumber);
-                // Basic styling
-                seatButton.setFont(new Font("Arial", Font.BOLD, 10));
-                seatButton.setMargin(new Insets(4, 4, 4, 4));
-                seatButton.setFocusPainted(false);
-                seatButton.setPreferredSize(new Dimension(55, 35)); // Uniform size
-
-                // Determine status from fetched map
-                String currentStatus = seatStatusMap.getOrDefault(seatNumber, "occupied"); // Default to occupied if unexpectedly missing
-                String tooltipText;
-
-                switch (currentStatus.toLowerCase()) {
-                    case "available":
-                        seatButton.setBackground(AVAILABLE_COLOR); seatButton.setForeground(Color.WHITE); seatButton.setEnabled(true);
-                        seatButton.addActionListener(this::handleSeatClick); // Add listener ONLY if available
-                        tooltipText = "Available - ₹" + price; break;
-                    case "booked": case "occupied": // Treat both as unavailable for selection
-                        seatButton.setBackground(OCCUPIED_COLOR); seatButton.setForeground(Color.WHITE); seatButton.setEnabled(false);
-                        tooltipText = "Occupied"; break;
-                    default: // Error state
-                        seatButton.setBackground(Color.GRAY); seatButton.setEnabled(false); tooltipText = "Error"; break;
-                }
-                seatButton.setToolTipText(tooltipText);
-                seatButtons.add(seatButton); // Keep track if needed
-                seatGridPanel.add(seatButton);
-            } else {
-                // Add placeholder for empty grid spots
-                JPanel placeholder = new JPanel();
-                placeholder.setPreferredSize(new Dimension(55, 35));
-                placeholder.setBackground(PLACEHOLDER_COLOR);
-                seatGridPanel.add(placeholder);
-            }
+    private void showSeatMap(Showtime showtime, SeatBitmap seatMap) {
+        if (showtime != currentShowtime) return; // Stale load
+        if (seatMap == null) {
+             showGridMessage("Error: Failed to initialize/fetch seats.");
+             return;
         }
+        gridMessageLabel.setVisible(false);
+
+        // Live updates from other kiosks; our map is the baseline so only later changes arrive
+        SeatMapSubscriptionService.getInstance().subscribe(showtime.getShowtimeId(), seatMap, seatChangeListener);
+
+        // Build Seat Grid UI straight from the bitsets (no per-seat components)
+        currentCols = seatMap.getCols();
+        int seatsInShow = seatMap.getTotalSeats();
+        String[] labels = new String[seatsInShow];
+        int[] prices = new int[seatsInShow];
+        byte[] states = new byte[seatsInShow];
+        for (int i = 0; i < seatsInShow; i++) {
+            labels[i] = SeatId.label(seatMap.seatIdAt(i));
+            prices[i] = SeatLayout.getRowPrice(i / currentCols, SeatLayout.rowCount(seatsInShow, currentCols));
+            states[i] = toSeatState(seatMap.statusOf(i));
+        }
+        seatHolds = new SeatHoldService.SeatHold[seatsInShow];
+        seatGrid.setSeatLayout(currentCols, seatsInShow, labels, prices, states);
+        updateBestSeatsSuggestion();
         updateCostLabels(); // Update cost display
-        seatGridPanel.revalidate(); seatGridPanel.repaint(); // Refresh grid UI
     }
 
+    private String getSelectedMovieTitle() {
+        Movie movie = mainApp.getSelectedMovie();
+        return (movie != null) ? movie.getTitle() : "Unknown Movie";
+    }
+
+    private void showGridMessage(String message) {
+        gridMessageLabel.setText(message);
+        gridMessageLabel.setVisible(true);
+    }
+
+    private static byte toSeatState(String status) {
+        switch (status.toLowerCase()) {
+            case "available": return SeatGridView.AVAILABLE;
+            case "booked": case "occupied": return SeatGridView.BOOKED; // Treat both as unavailable for selection
+            case "held": return SeatGridView.HELD; // Temporarily held by another customer
+            default: return SeatGridView.DISABLED; // Error state
+        }
+    }
+
+    // Pushed seat deltas (EDT): repaint only the changed seats, keeping our own selection intact
+    private void applySeatChanges(SeatBitmap seatMap, int[] changedSeatIndexes) {
+        if (currentShowtime == null || currentShowtime.getShowtimeId() != seatMap.getShowtimeId()
+                || seatMap.getCols() != currentCols || seatMap.getTotalSeats() != seatGrid.getSeatCount()) return; // Stale event
+        boolean selectionChanged = false;
+        for (int seatIndex : changedSeatIndexes) {
+            String status = seatMap.statusOf(seatIndex);
+            boolean ours = seatHolds[seatIndex] != null || pendingHolds.get(seatIndex); // Includes holds in flight
+            if (ours && SeatBitmap.STATUS_HELD.equals(status)) continue; // Our own hold
+            if (ours && SeatBitmap.STATUS_BOOKED.equals(status)) {
+                // Our hold lapsed and someone else booked the seat
+                SeatHoldService.getInstance().complete(seatHolds[seatIndex]);
+                seatHolds[seatIndex] = null;
+                selectedSeats.clear(seatIndex);
+                selectionChanged = true;
+            } else if (ours) {
+                continue; // Our lapsed hold was released; confirmSelection drops the seat from the selection
+            }
+            seatGrid.setSeatState(seatIndex, toSeatState(status)); // Repaints just this seat
+        }
+        if (selectionChanged) {
+            calculateSeatCost();
+            updateCostLabels();
+        }
+        updateBestSeatsSuggestion();
+    }
+
+    // Drops seats lost to another booking from the selection and shows them as occupied
+    private void markSeatsLost(int[] lostSeatIds) {
+        for (int seatId : lostSeatIds) {
+            int seatIndex = SeatId.toIndex(seatId, currentCols);
+            if (seatIndex < 0 || seatIndex >= seatHolds.length) continue;
+            SeatHoldService.getInstance().complete(seatHolds[seatIndex]); // Hold is gone with the seat
+            seatHolds[seatIndex] = null;
+            selectedSeats.clear(seatIndex);
+            seatGrid.setSeatState(seatIndex, SeatGridView.BOOKED);
+        }
+        calculateSeatCost();
+        updateCostLabels();
+    }
 
     // --- Event Handlers & Calculations ---
 
@@ -324,54 +408,164 @@ public class SeatSelectionPanel extends JPanel {
         updateCostLabels();   // Update display
     }
 
-    private void handleSeatClick(ActionEvent e) { // Changed parameter to ActionEvent
-        // Get the button that triggered the event
-        Object source = e.getSource();
-        if (!(source instanceof JToggleButton)) {
-            return; // Should not happen, but good practice to check
-        }
-        JToggleButton seatButton = (JToggleButton) source; // Cast the source to JToggleButton
-
-        // --- The rest of the logic remains the same ---
-        String seatNumber = seatButton.getText();
-        int price = getSeatPrice(seatNumber);
+    private void handleSeatClick(int seatIndex) {
+        requestHold(seatIndex);
+    }
 
-        if (seatButton.isSelected()) {
-            seatButton.setBackground(SELECTED_COLOR);
-            seatButton.setForeground(Color.BLACK);
-            selectedSeatsWithPrices.put(seatNumber, price); // Track selected seat and its price
-            seatButton.setToolTipText("Selected - ₹" + price);
-        } else {
-            seatButton.setBackground(AVAILABLE_COLOR);
-            seatButton.setForeground(Color.WHITE);
-            selectedSeatsWithPrices.remove(seatNumber); // Remove from selection
-            seatButton.setToolTipText("Available - ₹" + price);
+    // Selects (optimistically) or deselects a seat; the hold itself is taken or given back in the background.
+    // Completes when the seat's hold request has finished (true if the seat ended up selected).
+    private CompletableFuture<Boolean> requestHold(int seatIndex) {
+        if (pendingHolds.get(seatIndex)) return CompletableFuture.completedFuture(true); // Request still in flight
+        if (seatGrid.getSeatState(seatIndex) == SeatGridView.AVAILABLE) {
+            // Hold the seat until payment (or until the hold lapses)
+            int[] seatIds = {SeatId.fromIndex(seatIndex, currentCols)};
+            int showtimeId = currentShowtime.getShowtimeId();
+            int generation = panelGeneration;
+            pendingHolds.set(seatIndex);
+            seatGrid.setSeatState(seatIndex, SeatGridView.SELECTED); // Undone if someone got there first
+            selectedSeats.set(seatIndex); // Track selected seat (price follows from its row)
+            calculateSeatCost();
+            updateCostLabels();
+            CompletableFuture<Boolean> selected = new CompletableFuture<>();
+            DbExecutor.getInstance().supplyAsync(() -> SeatHoldService.getInstance().hold(showtimeId, seatIds))
+                    .whenComplete((hold, error) -> SwingUtilities.invokeLater(
+                            () -> selected.complete(holdFinished(generation, seatIndex, error == null ? hold : null))));
+            return selected;
         }
+        seatGrid.setSeatState(seatIndex, SeatGridView.AVAILABLE);
+        selectedSeats.clear(seatIndex); // Remove from selection
+        releaseInBackground(Collections.singletonList(seatHolds[seatIndex]));
+        seatHolds[seatIndex] = null;
         calculateSeatCost(); // Recalculate
         updateCostLabels(); // Update display
+        return CompletableFuture.completedFuture(false);
     }
 
-    private void handleSnackQuantityChange(ChangeEvent e) {
-        calculateSnackCost(); // Recalculate
-        updateCostLabels(); // Update display
+    // Hold result (EDT); returns true if the seat stays selected
+    private boolean holdFinished(int generation, int seatIndex, SeatHoldService.SeatHold hold) {
+        if (generation != panelGeneration) { // Panel was reloaded or left meanwhile
+            releaseInBackground(Collections.singletonList(hold));
+            return false;
+        }
+        pendingHolds.clear(seatIndex);
+        if (hold != null && !selectedSeats.get(seatIndex)) { // Dropped from the selection meanwhile (best seats)
+            releaseInBackground(Collections.singletonList(hold));
+            return false;
+        }
+        if (hold != null) {
+            seatHolds[seatIndex] = hold;
+            return true;
+        }
+        if (seatGrid.getSeatState(seatIndex) == SeatGridView.SELECTED) {
+            seatGrid.setSeatState(seatIndex, SeatGridView.HELD); // No longer available
+        }
+        selectedSeats.clear(seatIndex);
+        calculateSeatCost();
+        updateCostLabels();
+        updateBestSeatsSuggestion();
+        return false;
+    }
+
+    // Best contiguous seats for the party size from the grid as shown; our own selection counts as free
+    // because applying a suggestion replaces it
+    private int[] findBestSeats() {
+        int seatCount = seatGrid.getSeatCount();
+        long[] takenWords = new long[SeatBitmap.wordCount(seatCount)];
+        for (int i = 0; i < seatCount; i++) {
+            byte state = seatGrid.getSeatState(i);
+            if (state != SeatGridView.AVAILABLE && state != SeatGridView.SELECTED) {
+                takenWords[SeatBitmap.wordIndex(i)] |= SeatBitmap.bitMask(i);
+            }
+        }
+        return BestSeatFinder.find(takenWords, seatCount, currentCols, (Integer) partySizeSpinner.getValue());
     }
 
-    private int getSeatPrice(String seatNumber) {
-        if (seatNumber == null || seatNumber.isEmpty()) return 0;
-        char row = seatNumber.charAt(0);
-        switch (row) {
-            case 'A': case 'B': return PRICE_ROW_AB;
-            case 'C': case 'D': return PRICE_ROW_CD;
-            case 'E': case 'F': return PRICE_ROW_EF;
-            case 'G': case 'H': return PRICE_ROW_GH;
-            default: return 100; // Fallback
+    private void updateBestSeatsSuggestion() {
+        if (currentShowtime == null || seatGrid.getSeatCount() == 0) {
+            bestSeatsLabel.setText(" ");
+            return;
+        }
+        int[] best = findBestSeats();
+        if (best.length == 0) {
+            bestSeatsLabel.setText("Not enough seats available");
+            return;
+        }
+        int[] seatIds = new int[best.length];
+        for (int i = 0; i < best.length; i++) seatIds[i] = SeatId.fromIndex(best[i], currentCols);
+        bestSeatsLabel.setText("Best: " + SeatId.format(seatIds));
+    }
+
+    // Replaces the current selection with the suggested seats. Seats in both keep their holds: releasing and
+    // re-holding them would race, and a re-hold that got there first would conflict with our own hold.
+    private void selectBestSeats() {
+        if (currentShowtime == null) return;
+        int[] best = findBestSeats();
+        if (best.length == 0) {
+            JOptionPane.showMessageDialog(this, "Not enough seats available for this party size.", "Best Seats", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        BitSet suggested = new BitSet();
+        for (int seatIndex : best) suggested.set(seatIndex);
+        List<SeatHoldService.SeatHold> dropped = new ArrayList<>();
+        for (int seatIndex = selectedSeats.nextSetBit(0); seatIndex >= 0; seatIndex = selectedSeats.nextSetBit(seatIndex + 1)) {
+            if (suggested.get(seatIndex)) continue;
+            seatGrid.setSeatState(seatIndex, SeatGridView.AVAILABLE);
+            selectedSeats.clear(seatIndex);
+            if (seatHolds[seatIndex] != null) dropped.add(seatHolds[seatIndex]);
+            seatHolds[seatIndex] = null; // A hold still in flight is given back when it arrives
+        }
+        releaseInBackground(dropped);
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>();
+        for (int seatIndex : best) {
+            if (selectedSeats.get(seatIndex)) continue; // Already ours
+            requests.add(requestHold(seatIndex)); // Holds the seat, or marks it held if someone got there first
         }
+        calculateSeatCost();
+        updateCostLabels();
+        updateBestSeatsSuggestion();
+        int generation = panelGeneration;
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).thenRun(() -> SwingUtilities.invokeLater(() -> {
+            if (generation != panelGeneration) return;
+            int missed = 0;
+            for (CompletableFuture<Boolean> request : requests) if (!request.join()) missed++;
+            if (missed > 0) {
+                JOptionPane.showMessageDialog(this, missed + " of the suggested seats were just taken. Please review your selection.", "Best Seats", JOptionPane.WARNING_MESSAGE);
+            }
+        }));
+    }
+
+    // Releases every hold taken on this panel (navigation away, reload, shutdown); holds still in flight are
+    // given back when they arrive
+    public void releaseHolds() {
+        List<SeatHoldService.SeatHold> held = new ArrayList<>();
+        for (int i = 0; i < seatHolds.length; i++) {
+            if (seatHolds[i] != null) held.add(seatHolds[i]);
+            seatHolds[i] = null;
+        }
+        panelGeneration++;
+        pendingHolds.clear();
+        releaseInBackground(held);
+    }
+
+    // DbExecutor finishes queued calls on shutdown, so releases submitted while closing still happen
+    private static void releaseInBackground(List<SeatHoldService.SeatHold> holds) {
+        if (holds.isEmpty() || (holds.size() == 1 && holds.get(0) == null)) return;
+        DbExecutor.getInstance().supplyAsync(() -> {
+            for (SeatHoldService.SeatHold hold : holds) SeatHoldService.getInstance().release(hold);
+            return null;
+        });
+    }
+
+    private void handleSnackQuantityChange(ChangeEvent e) {
+        calculateSnackCost(); // Recalculate
+        updateCostLabels(); // Update display
     }
 
     private void calculateSeatCost() {
         currentSeatCost = 0;
-        for (int price : selectedSeatsWithPrices.values()) {
-            currentSeatCost += price;
+        int rows = SeatLayout.rowCount(seatGrid.getSeatCount(), currentCols);
+        for (int seatIndex = selectedSeats.nextSetBit(0); seatIndex >= 0; seatIndex = selectedSeats.nextSetBit(seatIndex + 1)) {
+            currentSeatCost += SeatLayout.getRowPrice(seatIndex / currentCols, rows);
         }
     }
 
@@ -404,47 +598,46 @@ public class SeatSelectionPanel extends JPanel {
         totalCostLabel.setText("Total Cost: " + currencyFormatter.format(currentSeatCost + currentSnackCost));
     }
 
-    // Static helper method for consistent seat number generation
-    public static String generateSeatNumber(int index, int cols) {
-        if (cols <= 0) return "Err";
-        char rowChar = (char) ('A' + (index / cols));
-        int seatNumInRow = (index % cols) + 1;
-        return "" + rowChar + seatNumInRow;
-    }
-
 
     // --- Confirmation and Booking ---
     private void confirmSelection(ActionEvent e) {
         // 1. Validate selection
-        if (selectedSeatsWithPrices.isEmpty()) {
+        if (selectedSeats.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select at least one seat.", "No Seats Selected", JOptionPane.WARNING_MESSAGE); return;
         }
         if (currentShowtime == null) {
             JOptionPane.showMessageDialog(this, "Error: Showtime information missing.", "Internal Error", JOptionPane.ERROR_MESSAGE); return;
         }
+        if (!pendingHolds.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Still reserving your seats. Please try again in a moment.", "Please Wait", JOptionPane.INFORMATION_MESSAGE); return;
+        }
         int loggedInUserId = mainApp.getLoggedInUserId();
         if (loggedInUserId == -1) {
             JOptionPane.showMessageDialog(this, "Error: User not logged in.", "Internal Error", JOptionPane.ERROR_MESSAGE); return;
         }
+        if (dropLapsedHolds()) return;
 
         // 2. Prepare data for confirmation dialog and booking
-        List<String> selectedSeatNumbers = new ArrayList<>(selectedSeatsWithPrices.keySet());
-        Collections.sort(selectedSeatNumbers, Comparator.comparing((String s) -> s.charAt(0)).thenComparingInt(s -> Integer.parseInt(s.substring(1)))); // Sort A1, A2.. B1..
+        int[] selectedSeatIds = new int[selectedSeats.cardinality()]; // Ascending index order is A1, A2.. B1..
+        List<SeatHoldService.SeatHold> selectedHolds = new ArrayList<>(selectedSeatIds.length);
+        int seatCount = 0;
+        for (int seatIndex = selectedSeats.nextSetBit(0); seatIndex >= 0; seatIndex = selectedSeats.nextSetBit(seatIndex + 1)) {
+            selectedSeatIds[seatCount++] = SeatId.fromIndex(seatIndex, currentCols);
+            selectedHolds.add(seatHolds[seatIndex]);
+        }
         Map<String, Integer> selectedSnacks = getSelectedSnacksWithQuantities();
         int finalSeatCost = currentSeatCost;
         int finalSnackCost = currentSnackCost;
         int grandTotal = finalSeatCost + finalSnackCost;
 
-        // Fetch movie title for dialog
-        Optional<Movie> movieOpt = movieDAO.getMovieByIntId(currentShowtime.getMovieId());
-        String movieTitle = movieOpt.map(Movie::getTitle).orElse("Unknown Movie");
+        String movieTitle = getSelectedMovieTitle();
 
         // 3. Build Confirmation Dialog Message (HTML formatted)
         StringBuilder confirmationMessage = new StringBuilder("<html><b>Confirm Your Booking:</b><br><br>");
         // Add details (Movie, Time, Seats, Seat Cost, Snacks, Snack Cost, Total) - same as previous version
         confirmationMessage.append("<b>Movie:</b> ").append(movieTitle).append("<br>");
         confirmationMessage.append("<b>Time:</b> ").append(currentShowtime.getShowDateTime().format(SHOWTIME_FORMAT)).append("<br>");
-        confirmationMessage.append("<b>Seats (").append(selectedSeatNumbers.size()).append("):</b> ").append(String.join(", ", selectedSeatNumbers)).append("<br>");
+        confirmationMessage.append("<b>Seats (").append(selectedSeatIds.length).append("):</b> ").append(SeatId.format(selectedSeatIds)).append("<br>");
         confirmationMessage.append("<b>Seat Cost:</b> ").append(currencyFormatter.format(finalSeatCost)).append("<br><br>");
         if (!selectedSnacks.isEmpty()) {
             confirmationMessage.append("<b>Snacks:</b><br>");
@@ -458,34 +651,87 @@ public class SeatSelectionPanel extends JPanel {
         // 4. Show Confirmation Dialog
         int choice = JOptionPane.showConfirmDialog(this, confirmationMessage.toString(), "Confirm Booking & Payment", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
 
-        // 5. Process Confirmation -> Call BookingDAO Transaction
+        // 5. Process Confirmation -> Call BookingDAO Transaction (off the EDT so the UI stays responsive)
         if (choice == JOptionPane.YES_OPTION) {
-            // Use the BookingDAO to perform the transactional booking
-            String bookingMongoId = bookingDAO.addBookingTransaction(
+            if (pendingRequestKey == null || pendingRequestShowtimeId != currentShowtime.getShowtimeId()
+                    || !Arrays.equals(pendingRequestSeatIds, selectedSeatIds)) {
+                pendingRequestKey = UUID.randomUUID().toString();
+                pendingRequestShowtimeId = currentShowtime.getShowtimeId();
+                pendingRequestSeatIds = selectedSeatIds;
+            }
+            confirmButton.setEnabled(false);
+            confirmButton.setText("Booking...");
+            final Showtime bookedShowtime = currentShowtime;
+            bookingDAO.addBookingAsync(
+                    pendingRequestKey,
                     loggedInUserId,
-                    currentShowtime.getShowtimeId(),
-                    selectedSeatNumbers,
+                    bookedShowtime.getShowtimeId(),
+                    selectedSeatIds,
+                    selectedHolds, // Converted into the booking; any other hold on these seats wins
                     selectedSnacks,
                     SNACK_PRICES, // Pass snack price map for storage in booking_snacks
                     finalSeatCost,
                     finalSnackCost,
                     grandTotal
-            );
-
-            // 6. Handle Transaction Result
-            if (bookingMongoId != null) {
-                 // Success! Store temporary details for the confirmation panel
-                 mainApp.setBookingDetails(selectedSeatNumbers, selectedSnacks, finalSeatCost, finalSnackCost, grandTotal);
-                 // Navigate to confirmation screen
-                 mainApp.showPanel(MovieTicketBookingSystem.CONFIRMATION_PANEL);
-            } else {
-                 // Booking failed (DAO should have logged details, maybe handled rollback)
-                 JOptionPane.showMessageDialog(this,
-                     "Booking failed. Seat availability may have changed. Please review the seat map and try again.",
-                     "Booking Error", JOptionPane.ERROR_MESSAGE);
-                 // Refresh seat status from DB by reloading the panel
-                 setupPanel(currentShowtime);
-            }
+            ).whenComplete((bookingResult, error) -> SwingUtilities.invokeLater(() -> {
+                confirmButton.setEnabled(true);
+                confirmButton.setText("Proceed to Payment");
+                if (currentShowtime != bookedShowtime) return; // User navigated away; holds were already released
+                handleBookingResult(error == null ? bookingResult : null, selectedSeatIds, selectedSnacks, finalSeatCost, finalSnackCost, grandTotal);
+            }));
+        }
+    }
+
+    // A selected seat whose hold has lapsed may be someone else's by now: drop such seats from the selection and
+    // ask the user to pick them again. Returns true if any were dropped.
+    private boolean dropLapsedHolds() {
+        int[] lapsedSeatIds = new int[selectedSeats.cardinality()];
+        int lapsedCount = 0;
+        for (int seatIndex = selectedSeats.nextSetBit(0); seatIndex >= 0; seatIndex = selectedSeats.nextSetBit(seatIndex + 1)) {
+            if (seatHolds[seatIndex] != null && seatHolds[seatIndex].isActive()) continue;
+            lapsedSeatIds[lapsedCount++] = SeatId.fromIndex(seatIndex, currentCols);
+            seatHolds[seatIndex] = null;
+            selectedSeats.clear(seatIndex);
+            seatGrid.setSeatState(seatIndex, SeatGridView.AVAILABLE); // Pushed updates repaint it if someone else has it
+        }
+        if (lapsedCount == 0) return false;
+        calculateSeatCost();
+        updateCostLabels();
+        updateBestSeatsSuggestion();
+        JOptionPane.showMessageDialog(this,
+            "Your hold on " + SeatId.format(Arrays.copyOf(lapsedSeatIds, lapsedCount)) + " has expired.\nPlease select the seats again.",
+            "Seat Hold Expired", JOptionPane.WARNING_MESSAGE);
+        return true;
+    }
+
+    // 6. Handle Transaction Result (EDT)
+    private void handleBookingResult(BookingDAO.BookingResult bookingResult, int[] selectedSeatIds, Map<String, Integer> selectedSnacks,
+                                     int finalSeatCost, int finalSnackCost, int grandTotal) {
+        if (bookingResult != null && bookingResult.isSuccess()) {
+             pendingRequestKey = null; // Next submission is a new request
+             // Holds were converted into the booking
+             for (int i = 0; i < seatHolds.length; i++) {
+                 if (seatHolds[i] != null) SeatHoldService.getInstance().complete(seatHolds[i]);
+                 seatHolds[i] = null;
+             }
+             // Success! Store temporary details for the confirmation panel
+             mainApp.setBookingDetails(selectedSeatIds, selectedSnacks, finalSeatCost, finalSnackCost, grandTotal);
+             // Navigate to confirmation screen
+             mainApp.showPanel(MovieTicketBookingSystem.CONFIRMATION_PANEL);
+        } else if (bookingResult != null && bookingResult.getConflictingSeats().length > 0) {
+             // Only the listed seats were lost: mark them occupied and keep the rest of the selection
+             int[] lostSeats = bookingResult.getConflictingSeats();
+             markSeatsLost(lostSeats);
+             JOptionPane.showMessageDialog(this,
+                 "Sorry, these seats were just booked by someone else: " + SeatId.format(lostSeats) + ".\nPlease choose replacements.",
+                 "Seats No Longer Available", JOptionPane.WARNING_MESSAGE);
+        } else {
+             // Booking failed (DAO should have logged details, maybe handled rollback)
+             JOptionPane.showMessageDialog(this,
+                 "Booking failed. Seat availability may have changed. Please review the seat map and try again.",
+                 "Booking Error", JOptionPane.ERROR_MESSAGE);
+             // Refresh seat status from DB by reloading the panel
+             setupPanel(currentShowtime);
         }
     }
 } // End of SeatSelectionPanel class
\ No newline at end of file
@@ -0,0 +1,118 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Integer ids (booking_id, user_id, showtime_id) from the 'counters' collection. Each JVM reserves a block of
+// ids with one atomic $inc and hands them out from memory, so kiosks never hand out the same id and never read
+// the max id of a collection on the hot path. Unused ids of a block are skipped after a restart.
+public class SequenceService {
+
+    public static final String BOOKING_ID = "booking_id";
+    public static final String USER_ID = "user_id";
+    public static final String SHOWTIME_ID = "showtime_id";
+
+    private static final int DEFAULT_BLOCK_SIZE = 20;
+
+    // Sequence -> collection holding ids issued before the counter existed (the counter starts above their max)
+    private static final Map<String, String> SEED_COLLECTIONS = new HashMap<>();
+    static {
+        SEED_COLLECTIONS.put(BOOKING_ID, "bookings");
+        SEED_COLLECTIONS.put(USER_ID, "users");
+        SEED_COLLECTIONS.put(SHOWTIME_ID, "showtimes");
+    }
+
+    private static volatile SequenceService instance;
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> countersCollection;
+    private final int blockSize;
+    private final Map<String, IdBlock> blocks = new ConcurrentHashMap<>();
+
+    private SequenceService() {
+        this.database = MongoConnector.getDatabase();
+        this.countersCollection = database.getCollection("counters");
+        this.blockSize = Math.max(1, Integer.getInteger("sequence.blockSize", DEFAULT_BLOCK_SIZE));
+    }
+
+    public static SequenceService getInstance() {
+        SequenceService local = instance;
+        if (local == null) {
+            synchronized (SequenceService.class) {
+                local = instance;
+                if (local == null) {
+                    local = new SequenceService();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    // Next id of the sequence; only touches the database when the current block is used up
+    public int nextId(String sequence) {
+        IdBlock block = blocks.computeIfAbsent(sequence, name -> new IdBlock());
+        synchronized (block) {
+            if (block.next > block.last) {
+                if (!block.seeded) {
+                    seedIfMissing(sequence);
+                    block.seeded = true; // Counters are never removed, so once per process is enough
+                }
+                long last = reserveBlock(sequence);
+                block.next = last - blockSize + 1;
+                block.last = last;
+            }
+            return (int) block.next++;
+        }
+    }
+
+    // One findOneAndUpdate per block: the counter holds the last id reserved by any kiosk
+    private long reserveBlock(String sequence) {
+        Document counter = countersCollection.findOneAndUpdate(Filters.eq("_id", sequence),
+                Updates.inc("value", (long) blockSize),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        if (counter == null) throw new IllegalStateException("Failed to reserve ids for sequence " + sequence);
+        long last = ((Number) counter.get("value")).longValue();
+        if (last > Integer.MAX_VALUE) throw new IllegalStateException("Sequence " + sequence + " exhausted");
+        System.out.println("Reserved " + sequence + " ids " + (last - blockSize + 1) + ".." + last);
+        return last;
+    }
+
+    // First use of a sequence on an existing database: start the counter at the collection's current max id.
+    // Insert-only, so concurrent kiosks seeding at the same time agree on one value.
+    private void seedIfMissing(String sequence) {
+        if (countersCollection.countDocuments(Filters.eq("_id", sequence)) > 0) return;
+        long maxId = 0;
+        String seedCollection = SEED_COLLECTIONS.get(sequence);
+        if (seedCollection != null) {
+            Document maxDoc = database.getCollection(seedCollection).find().sort(Sorts.descending(sequence))
+                    .limit(1).projection(new Document(sequence, 1)).first();
+            if (maxDoc != null && maxDoc.get(sequence) instanceof Number) maxId = ((Number) maxDoc.get(sequence)).longValue();
+        }
+        try {
+            countersCollection.updateOne(Filters.eq("_id", sequence), Updates.setOnInsert("value", maxId),
+                    new UpdateOptions().upsert(true));
+        } catch (MongoWriteException e) {
+            // Another kiosk inserted the counter first (duplicate key on the upsert); its value stands
+        }
+    }
+
+    // Ids next..last are reserved for this JVM
+    private static final class IdBlock {
+        long next = 1;
+        long last = 0;
+        boolean seeded; // seedIfMissing has run for this sequence
+    }
+}
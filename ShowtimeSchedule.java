@@ -0,0 +1,282 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import movieticketbookingsystem.Showtime;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// In-memory index of the showtimes in the rolling 7-day window the booking screens offer. Loaded with one range
+// query, then kept current by a change stream on 'showtimes' (inserts, updates other than availability counter
+// moves, deletes), so browsing dates and time slots makes no database calls. Keyed by date-time, with a secondary
+// index by movie. Lookups outside the window fall through to ShowtimeDAO. A background task moves the window
+// forward just after midnight, so lookups never wait on the reload.
+// With the in-memory storage backend there is no change stream; DataStore reports its writes via showtimeSaved.
+public class ShowtimeSchedule {
+
+    private static final int WINDOW_DAYS = 7;
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final long ROLL_DELAY_MS = 1000; // Past midnight, so LocalDate.now() is already the new day
+
+    private static volatile ShowtimeSchedule instance;
+
+    private final MongoCollection<Document> showtimesCollection; // null with the in-memory backend
+    private final ShowtimeDAO showtimeDAO;
+
+    // Readers go lock-free through the concurrent maps; all mutations are synchronized on this
+    private final NavigableMap<LocalDateTime, Map<Integer, Showtime>> byDateTime = new ConcurrentSkipListMap<>();
+    private final Map<Integer, NavigableMap<LocalDateTime, Showtime>> byMovie = new ConcurrentHashMap<>();
+    private final Map<Integer, Showtime> byShowtimeId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> showtimeIdByObjectId = new ConcurrentHashMap<>(); // Delete events only carry _id
+    private volatile LocalDate windowStart;
+
+    private final Thread watcher;
+    private final ScheduledExecutorService roller;
+    private volatile boolean running = true;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private BsonDocument resumeToken; // Watcher thread only
+
+    private ShowtimeSchedule() {
+        this.showtimesCollection = DaoRegistry.isInMemory() ? null : MongoConnector.getDatabase().getCollection("showtimes");
+        this.showtimeDAO = DaoRegistry.getInstance().getShowtimeDAO();
+        reload();
+        this.watcher = new Thread(this::watchLoop, "showtime-change-stream");
+        this.watcher.setDaemon(true);
+        if (showtimesCollection != null) this.watcher.start();
+        this.roller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "showtime-schedule-roll");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleRoll();
+    }
+
+    // The first call loads the window: make it off the EDT, once SchemaBootstrap has finished (the sample showtimes
+    // must exist), and not by blocking on the bootstrap inside a DbExecutor task, which runs the bootstrap itself
+    public static ShowtimeSchedule getInstance() {
+        ShowtimeSchedule local = instance;
+        if (local == null) {
+            synchronized (ShowtimeSchedule.class) {
+                local = instance;
+                if (local == null) {
+                    local = new ShowtimeSchedule();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public static void shutdown() {
+        ShowtimeSchedule local = instance;
+        if (local != null) {
+            local.running = false;
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> c = local.cursor;
+            if (c != null) {
+                try { c.close(); } catch (Exception ignored) { }
+            }
+            local.watcher.interrupt();
+            local.roller.shutdownNow();
+            instance = null;
+        }
+    }
+
+    // Lets this kiosk see its own writes before the change stream event arrives; no-op if the schedule isn't loaded
+    static void showtimeSaved(Showtime showtime) {
+        ShowtimeSchedule local = instance;
+        if (local != null) local.upsert(showtime);
+    }
+
+    // Showtimes of the day, ordered by time
+    public List<Showtime> getShowtimesOn(LocalDate date) {
+        if (!inWindow(date)) return showtimeDAO.getShowtimesByDate(date);
+        List<Showtime> showtimes = new ArrayList<>();
+        for (Map<Integer, Showtime> slot : byDateTime.subMap(date.atStartOfDay(), date.plusDays(1).atStartOfDay()).values()) {
+            showtimes.addAll(slot.values());
+        }
+        return showtimes;
+    }
+
+    // Every showtime starting exactly at dateTime (one per movie/screen)
+    public List<Showtime> getShowtimesAt(LocalDateTime dateTime) {
+        if (!inWindow(dateTime.toLocalDate())) {
+            List<Showtime> showtimes = new ArrayList<>();
+            for (Showtime showtime : showtimeDAO.getShowtimesByDate(dateTime.toLocalDate())) {
+                if (dateTime.equals(showtime.getShowDateTime())) showtimes.add(showtime);
+            }
+            return showtimes;
+        }
+        Map<Integer, Showtime> slot = byDateTime.get(dateTime);
+        return (slot == null) ? Collections.emptyList() : new ArrayList<>(slot.values());
+    }
+
+    public Optional<Showtime> findShowtime(int movieId, LocalDateTime dateTime) {
+        if (!inWindow(dateTime.toLocalDate())) return showtimeDAO.findShowtime(movieId, dateTime);
+        NavigableMap<LocalDateTime, Showtime> movieShowtimes = byMovie.get(movieId);
+        return Optional.ofNullable((movieShowtimes == null) ? null : movieShowtimes.get(dateTime));
+    }
+
+    // The movie's showtimes in the window, ordered by time
+    public List<Showtime> getShowtimesForMovie(int movieId) {
+        NavigableMap<LocalDateTime, Showtime> movieShowtimes = byMovie.get(movieId);
+        return (movieShowtimes == null) ? Collections.emptyList() : new ArrayList<>(movieShowtimes.values());
+    }
+
+    // Against the loaded window: until the roll after midnight it still starts yesterday, and the new last day
+    // falls through to ShowtimeDAO
+    private boolean inWindow(LocalDate date) {
+        LocalDate start = windowStart;
+        return !date.isBefore(start) && date.isBefore(start.plusDays(WINDOW_DAYS));
+    }
+
+    // --- Index maintenance ---
+
+    // Rescheduled from each run rather than at a fixed rate, so DST changes and clock adjustments don't drift it.
+    // A window still behind (the roll failed) is retried shortly.
+    private void scheduleRoll() {
+        LocalDateTime now = LocalDateTime.now();
+        long delayMs = now.toLocalDate().equals(windowStart)
+                ? Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis() + ROLL_DELAY_MS
+                : RECONNECT_DELAY_MS;
+        try {
+            roller.schedule(this::rollWindow, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    private void rollWindow() {
+        try {
+            if (!LocalDate.now().equals(windowStart)) reload();
+        } catch (Exception e) {
+            System.err.println("Could not roll the showtime schedule window: " + e.getMessage());
+        } finally {
+            scheduleRoll();
+        }
+    }
+
+    private synchronized void reload() {
+        LocalDate today = LocalDate.now();
+        List<Showtime> showtimes = showtimeDAO.getShowtimesBetween(today.atStartOfDay(), today.plusDays(WINDOW_DAYS).atStartOfDay());
+        byDateTime.clear();
+        byMovie.clear();
+        byShowtimeId.clear();
+        showtimeIdByObjectId.clear();
+        windowStart = today;
+        showtimes.forEach(this::upsert);
+        System.out.println("Showtime schedule loaded: " + showtimes.size() + " showtimes from " + today);
+    }
+
+    private synchronized void upsert(Showtime showtime) {
+        remove(showtime.getShowtimeId()); // Its time or movie may have changed
+        LocalDateTime dateTime = showtime.getShowDateTime();
+        LocalDate start = windowStart;
+        if (dateTime == null || start == null || dateTime.isBefore(start.atStartOfDay())
+                || !dateTime.isBefore(start.plusDays(WINDOW_DAYS).atStartOfDay())) return;
+        byDateTime.computeIfAbsent(dateTime, t -> new ConcurrentHashMap<>()).put(showtime.getShowtimeId(), showtime);
+        byMovie.computeIfAbsent(showtime.getMovieId(), id -> new ConcurrentSkipListMap<>()).put(dateTime, showtime);
+        byShowtimeId.put(showtime.getShowtimeId(), showtime);
+        if (showtime.getId() != null) showtimeIdByObjectId.put(showtime.getId(), showtime.getShowtimeId());
+    }
+
+    private synchronized void remove(int showtimeId) {
+        Showtime old = byShowtimeId.remove(showtimeId);
+        if (old == null) return;
+        if (old.getId() != null) showtimeIdByObjectId.remove(old.getId());
+        Map<Integer, Showtime> slot = byDateTime.get(old.getShowDateTime());
+        if (slot != null) {
+            slot.remove(showtimeId);
+            if (slot.isEmpty()) byDateTime.remove(old.getShowDateTime());
+        }
+        NavigableMap<LocalDateTime, Showtime> movieShowtimes = byMovie.get(old.getMovieId());
+        if (movieShowtimes != null) {
+            movieShowtimes.remove(old.getShowDateTime());
+            if (movieShowtimes.isEmpty()) byMovie.remove(old.getMovieId());
+        }
+    }
+
+    // --- Change stream ---
+
+    // Updates that only move the availability counters (one per booking or cancellation, see
+    // MongoShowtimeDAO.adjustAvailability) are filtered out server-side: the schedule doesn't carry the counters,
+    // and each event would cost an update lookup plus a cache invalidation on every kiosk.
+    private static Bson scheduleChanges() {
+        Document otherFields = new Document("$filter", new Document("input",
+                new Document("$objectToArray", new Document("$ifNull", Arrays.asList("$updateDescription.updatedFields", new Document()))))
+                .append("cond", new Document("$not", Collections.singletonList(new Document("$regexMatch",
+                        new Document("input", "$$this.k").append("regex", "^(seats_available|available_by_price|price_tiers)(\\.|$)"))))));
+        return Filters.or(
+                Filters.in("operationType", "insert", "replace", "delete"),
+                Filters.and(Filters.eq("operationType", "update"), Filters.or(
+                        Filters.exists("updateDescription.removedFields.0"),
+                        Filters.expr(new Document("$gt", Arrays.asList(new Document("$size", otherFields), 0))))));
+    }
+
+    private void watchLoop() {
+        List<Bson> pipeline = Collections.singletonList(Aggregates.match(scheduleChanges()));
+        while (running) {
+            try {
+                ChangeStreamIterable<Document> stream = showtimesCollection.watch(pipeline).fullDocument(FullDocument.UPDATE_LOOKUP);
+                if (resumeToken != null) stream = stream.resumeAfter(resumeToken);
+                cursor = stream.cursor();
+                while (running && cursor.hasNext()) {
+                    ChangeStreamDocument<Document> event = cursor.next();
+                    resumeToken = event.getResumeToken();
+                    handleEvent(event);
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                System.err.println("Showtime change stream interrupted, reloading schedule: " + e.getMessage());
+                reload(); // Events may have been missed if the resume token is no longer valid
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleEvent(ChangeStreamDocument<Document> event) {
+        Document fullDocument = event.getFullDocument();
+        if (event.getOperationType() != OperationType.DELETE && fullDocument != null) {
+            Showtime showtime = MongoShowtimeDAO.mapDocumentToShowtime(fullDocument);
+            CatalogCache.getInstance().invalidateShowtime(showtime.getShowtimeId());
+            upsert(showtime);
+            return;
+        }
+        // Deleted (or gone before the update lookup): only the _id is known
+        BsonValue id = (event.getDocumentKey() != null) ? event.getDocumentKey().get("_id") : null;
+        if (id == null || !id.isObjectId()) return;
+        Integer showtimeId = showtimeIdByObjectId.get(id.asObjectId().getValue().toHexString());
+        if (showtimeId != null) {
+            CatalogCache.getInstance().invalidateShowtime(showtimeId);
+            remove(showtimeId);
+        }
+    }
+}
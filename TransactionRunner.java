@@ -0,0 +1,217 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoException;
+import com.mongodb.TransactionOptions;
+import com.mongodb.client.ClientSession;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+// Runs MongoDB transactions and retries the ones that failed for transient reasons (TransientTransactionError,
+// UnknownTransactionCommitResult, write conflicts) with capped exponential backoff and full jitter.
+// Retries draw from a per-showtime token bucket so a hot showtime can't turn contention into a retry storm.
+// Counters are exported over JMX as movieticketbookingsystem:type=BookingTransactions.
+public class TransactionRunner {
+
+    // The work done inside one transaction attempt; may run more than once
+    public interface TransactionBody<T> {
+        T run(ClientSession session);
+    }
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 20;
+    private static final long MAX_BACKOFF_MS = 500;
+    private static final int WRITE_CONFLICT_CODE = 112;
+    private static final double BUDGET_TOKENS_PER_SECOND = 5;
+    private static final double BUDGET_BURST = 10;
+    private static final long BUDGET_SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static volatile TransactionRunner instance;
+
+    private final Map<Integer, RetryBudget> budgets = new ConcurrentHashMap<>(); // Idle ones are swept, see sweepBudgets
+    private final AtomicLong nextBudgetSweepNanos = new AtomicLong(System.nanoTime() + BUDGET_SWEEP_INTERVAL_NANOS);
+    private final Metrics metrics = new Metrics();
+
+    private TransactionRunner() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("movieticketbookingsystem:type=BookingTransactions"));
+        } catch (Exception e) {
+            System.err.println("Could not register transaction metrics: " + e.getMessage());
+        }
+    }
+
+    public static TransactionRunner getInstance() {
+        TransactionRunner local = instance;
+        if (local == null) {
+            synchronized (TransactionRunner.class) {
+                local = instance;
+                if (local == null) {
+                    local = new TransactionRunner();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public TransactionMetricsMXBean getMetrics() {
+        return metrics;
+    }
+
+    // Runs body in a transaction on the given session and commits it. Non-retryable errors (including the
+    // body's own exceptions) abort the transaction and are rethrown unchanged.
+    public <T> T run(ClientSession session, TransactionOptions options, int showtimeId, String operation,
+                     TransactionBody<T> body) {
+        int attempt = 0;
+        attempts:
+        while (true) {
+            attempt++;
+            metrics.attempts.increment();
+            session.startTransaction(options);
+            T result;
+            try {
+                result = body.run(session);
+            } catch (RuntimeException e) {
+                abortQuietly(session);
+                if (isRetryable(e) && mayRetry(attempt, showtimeId, operation, e)) continue;
+                metrics.failures.increment();
+                throw e;
+            }
+
+            while (true) {
+                try {
+                    session.commitTransaction();
+                    metrics.commits.increment();
+                    if (attempt > 1) metrics.retriedCommits.increment();
+                    return result;
+                } catch (MongoException e) {
+                    boolean commitUnknown = e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+                    if ((commitUnknown || isRetryable(e)) && mayRetry(attempt, showtimeId, operation, e)) {
+                        if (!commitUnknown) continue attempts;
+                        attempt++; // Same transaction: commit is safe to repeat
+                        metrics.attempts.increment();
+                        continue;
+                    }
+                    metrics.failures.increment();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // DAOs sometimes wrap driver errors, so the whole cause chain is checked
+    private static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException) {
+                MongoException mongoException = (MongoException) t;
+                if (mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+                        || mongoException.getCode() == WRITE_CONFLICT_CODE) return true;
+            }
+        }
+        return false;
+    }
+
+    // After 'attempt' failed tries: checks the attempt limit and the showtime's budget, then sleeps the backoff.
+    // false means give up.
+    private boolean mayRetry(int attempt, int showtimeId, String operation, RuntimeException e) {
+        if (attempt >= MAX_ATTEMPTS) {
+            metrics.exhausted.increment();
+            return false;
+        }
+        sweepBudgets();
+        if (!budgets.computeIfAbsent(showtimeId, id -> new RetryBudget()).tryAcquire()) {
+            metrics.budgetDenied.increment();
+            System.err.println("Retry budget exhausted for showtime " + showtimeId + ", not retrying " + operation);
+            return false;
+        }
+        long backoffMillis = backoffMillis(attempt);
+        metrics.retries.increment();
+        System.out.println("Retrying " + operation + " for showtime " + showtimeId + " after attempt " + attempt
+                + " (backoff " + backoffMillis + " ms): " + e.getMessage());
+        try {
+            Thread.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // A budget that has refilled to its burst is no different from a new one, so dropping it loses nothing; this
+    // keeps the map to the showtimes retried recently instead of every showtime ever retried. At most one sweep
+    // per interval, by whichever retry gets there first.
+    private void sweepBudgets() {
+        long now = System.nanoTime();
+        long next = nextBudgetSweepNanos.get();
+        if (now - next < 0 || !nextBudgetSweepNanos.compareAndSet(next, now + BUDGET_SWEEP_INTERVAL_NANOS)) return;
+        budgets.values().removeIf(budget -> budget.isFull(now));
+    }
+
+    // Full jitter: uniform in [0, min(cap, base * 2^(attempt - 1))]
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void abortQuietly(ClientSession session) {
+        try {
+            if (session.hasActiveTransaction()) session.abortTransaction();
+        } catch (Exception ignored) {
+            // The server aborts the transaction on its own when it times out
+        }
+    }
+
+    // Token bucket: BUDGET_TOKENS_PER_SECOND retries per showtime, bursting to BUDGET_BURST
+    private static final class RetryBudget {
+        private double tokens = BUDGET_BURST;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(BUDGET_BURST, tokens + (now - lastRefillNanos) / 1e9 * BUDGET_TOKENS_PER_SECOND);
+            lastRefillNanos = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean isFull(long now) {
+            return tokens + (now - lastRefillNanos) / 1e9 * BUDGET_TOKENS_PER_SECOND >= BUDGET_BURST;
+        }
+    }
+
+    public interface TransactionMetricsMXBean {
+        long getAttempts();
+        long getCommits();
+        long getRetries();
+        long getRetriedCommits();
+        long getExhausted();
+        long getBudgetDenied();
+        long getFailures();
+    }
+
+    private static final class Metrics implements TransactionMetricsMXBean {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder commits = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder retriedCommits = new LongAdder(); // Committed after at least one retry
+        final LongAdder exhausted = new LongAdder(); // Gave up after MAX_ATTEMPTS
+        final LongAdder budgetDenied = new LongAdder();
+        final LongAdder failures = new LongAdder(); // Any transaction that did not commit
+
+        @Override public long getAttempts() { return attempts.sum(); }
+        @Override public long getCommits() { return commits.sum(); }
+        @Override public long getRetries() { return retries.sum(); }
+        @Override public long getRetriedCommits() { return retriedCommits.sum(); }
+        @Override public long getExhausted() { return exhausted.sum(); }
+        @Override public long getBudgetDenied() { return budgetDenied.sum(); }
+        @Override public long getFailures() { return failures.sum(); }
+    }
+}
@@ -0,0 +1,65 @@
+package movieticketbookingsystem.db;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.model.Filters;
+import movieticketbookingsystem.SeatId;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+// Seats in the upper half of a 64-bit word (index mod 64 >= 31) must be claimable: the server rejects numeric
+// bitmasks that don't fit a non-negative int32. Run with the MongoDB driver on the classpath; the claim part
+// needs a server at -Dmongo.uri and is skipped without one. Exits non-zero on failure.
+public class MongoSeatDAOBitmaskTest {
+
+    private static final int SHOWTIME_ID = -6363; // Scratch seat map, removed afterwards
+    private static final int COLS = 8;
+    private static final int SEAT_INDEX = 63; // Top bit of word 0
+
+    public static void main(String[] args) {
+        filterUsesBitPositions();
+        claimsSeatIndex63();
+        System.out.println("MongoSeatDAOBitmaskTest passed");
+    }
+
+    private static void filterUsesBitPositions() {
+        BsonDocument filter = MongoSeatDAO.bitsAllClear("booked.0", SeatBitmap.bitMask(SEAT_INDEX))
+                .toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        check(filter.getDocument("booked.0").getArray("$bitsAllClear").equals(
+                BsonDocument.parse("{p: [63]}").getArray("p")), "bit 63 filter encodes as [63]: " + filter.toJson());
+    }
+
+    private static void claimsSeatIndex63() {
+        MongoSeatDAO seatDAO;
+        try {
+            MongoConnector.getDatabase().runCommand(new Document("ping", 1));
+            seatDAO = new MongoSeatDAO();
+        } catch (Exception e) {
+            System.out.println("No MongoDB server, skipping the claim check: " + e.getMessage());
+            return;
+        }
+        int seatId = SeatId.fromIndex(SEAT_INDEX, COLS);
+        try (ClientSession session = MongoConnector.getMongoClient().startSession()) {
+            check(seatDAO.initializeSeatsForShowtime(SHOWTIME_ID, COLS * COLS, COLS), "seat map initialized");
+            MongoSeatDAO.SeatClaimResult claim = seatDAO.updateSeatStatusBulk(session, SHOWTIME_ID, new int[] { seatId },
+                    SeatBitmap.STATUS_AVAILABLE, SeatBitmap.STATUS_BOOKED);
+            check(claim.isSuccess(), "seat index 63 claimed");
+            check(seatDAO.getSeatMap(SHOWTIME_ID).isBooked(SEAT_INDEX), "seat index 63 stored as booked");
+            MongoSeatDAO.SeatClaimResult again = seatDAO.updateSeatStatusBulk(session, SHOWTIME_ID, new int[] { seatId },
+                    SeatBitmap.STATUS_AVAILABLE, SeatBitmap.STATUS_BOOKED);
+            check(!again.isSuccess() && again.getConflictingSeats().length == 1
+                    && again.getConflictingSeats()[0] == seatId, "second claim reports seat index 63 as a conflict");
+        } finally {
+            MongoConnector.getDatabase().getCollection("seat_maps").deleteOne(Filters.eq("showtime_id", SHOWTIME_ID));
+            MongoConnector.close();
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            System.err.println("FAILED: " + what);
+            System.exit(1);
+        }
+        System.out.println("ok: " + what);
+    }
+}